@@ -83,6 +83,9 @@ neoForge {
 
 sourceSets.main.get().resources.srcDir("src/generated/resources")
 
+// Unit tests run without a game, they only need the Minecraft and NeoForge classes on the classpath
+neoForge.addModdingDependenciesTo(sourceSets.test.get())
+
 dependencies {
     compileOnly("mezz.jei:jei-${minecraft_version}-common-api:${jei_version}")
     compileOnly("mezz.jei:jei-${minecraft_version}-neoforge-api:${jei_version}")
@@ -90,6 +93,13 @@ dependencies {
     
     compileOnly("vazkii.patchouli:Patchouli:1.21.1-92-NEOFORGE:api")
     runtimeOnly("vazkii.patchouli:Patchouli:1.21.1-92-NEOFORGE")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 val generateModMetadata by tasks.registering(ProcessResources::class) {
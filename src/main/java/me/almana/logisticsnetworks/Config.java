@@ -18,14 +18,21 @@ public class Config {
             .comment("Enable debug overlays and diagnostic logging.")
             .define("debugMode", false);
 
+    private static final ModConfigSpec.LongValue dispatchBudgetNanosSpec = builder
+            .comment("Maximum time in nanoseconds spent dispatching networks per server tick. Networks that do not fit",
+                    "are carried over to the next tick. 0 disables the budget.")
+            .defineInRange("dispatchBudgetNanos", 5_000_000L, 0L, Long.MAX_VALUE);
+
     static final ModConfigSpec SPEC = builder.build();
 
     public static boolean dropNodeItem;
     public static boolean debugMode;
+    public static long dispatchBudgetNanos = 5_000_000L;
 
     @SubscribeEvent
     static void onLoad(final ModConfigEvent event) {
         dropNodeItem = dropNodeItemSpec.get();
         debugMode = debugModeSpec.get();
+        dispatchBudgetNanos = dispatchBudgetNanosSpec.get();
     }
 }
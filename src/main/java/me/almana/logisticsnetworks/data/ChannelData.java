@@ -1,5 +1,6 @@
 package me.almana.logisticsnetworks.data;
 
+import me.almana.logisticsnetworks.filter.CompiledFilter;
 import net.minecraft.core.Direction;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
@@ -37,6 +38,9 @@ public class ChannelData {
     private int priority = 0;
 
     private final ItemStack[] filterItems = new ItemStack[FILTER_SIZE];
+    // Built on first use, dropped whenever the filter slots or filter mode change
+    @Nullable
+    private CompiledFilter compiledFilter;
 
     public ChannelData() {
         this(false);
@@ -103,6 +107,7 @@ public class ChannelData {
         }
 
         Arrays.fill(filterItems, ItemStack.EMPTY);
+        compiledFilter = null;
         if (provider != null && tag.contains(KEY_FILTERS, Tag.TAG_LIST)) {
             ListTag list = tag.getList(KEY_FILTERS, Tag.TAG_COMPOUND);
             for (Tag t : list) {
@@ -202,8 +207,10 @@ public class ChannelData {
     }
 
     public void setFilterMode(FilterMode filterMode) {
-        if (filterMode != null)
+        if (filterMode != null && filterMode != this.filterMode) {
             this.filterMode = filterMode;
+            this.compiledFilter = null;
+        }
     }
 
     public int getPriority() {
@@ -227,6 +234,14 @@ public class ChannelData {
     public void setFilterItem(int slot, ItemStack stack) {
         if (slot >= 0 && slot < FILTER_SIZE) {
             filterItems[slot] = stack == null ? ItemStack.EMPTY : stack.copyWithCount(1);
+            compiledFilter = null;
+        }
+    }
+
+    public CompiledFilter getCompiledFilter(HolderLookup.Provider provider) {
+        if (compiledFilter == null || compiledFilter.isStale()) {
+            compiledFilter = CompiledFilter.compile(filterItems, filterMode, provider);
         }
+        return compiledFilter;
     }
 }
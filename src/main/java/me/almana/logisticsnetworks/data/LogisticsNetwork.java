@@ -1,9 +1,12 @@
 package me.almana.logisticsnetworks.data;
 
+import me.almana.logisticsnetworks.logic.NetworkTopology;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.*;
 
 public class LogisticsNetwork {
@@ -22,6 +25,12 @@ public class LogisticsNetwork {
     // Runtime flags
     private boolean dirty = false;
     private boolean scheduled = false;
+    @Nullable
+    private NetworkTopology topology;
+    // Export channels woken by the scheduler, node -> channel bitmask
+    private final Map<UUID, Integer> dueChannels = new LinkedHashMap<>();
+    // Channels touched by a change since the last dispatch, node -> channel bitmask
+    private final Map<UUID, Integer> dirtyChannels = new LinkedHashMap<>();
 
     public LogisticsNetwork(UUID id) {
         this(id, "Network-" + id.toString().substring(0, 6));
@@ -72,13 +81,15 @@ public class LogisticsNetwork {
     }
 
     public void addNode(UUID nodeUuid) {
-        if (nodeUuid != null) {
-            nodeUuids.add(nodeUuid);
+        if (nodeUuid != null && nodeUuids.add(nodeUuid)) {
+            invalidateTopology();
         }
     }
 
     public void removeNode(UUID nodeUuid) {
-        nodeUuids.remove(nodeUuid);
+        if (nodeUuids.remove(nodeUuid)) {
+            invalidateTopology();
+        }
     }
 
     public UUID getId() {
@@ -97,6 +108,43 @@ public class LogisticsNetwork {
         return Collections.unmodifiableSet(nodeUuids);
     }
 
+    @Nullable
+    public NetworkTopology getTopology() {
+        return topology;
+    }
+
+    public void setTopology(@Nullable NetworkTopology topology) {
+        this.topology = topology;
+    }
+
+    public void invalidateTopology() {
+        this.topology = null;
+    }
+
+    public void markChannelDue(UUID nodeId, int channelIndex) {
+        dueChannels.merge(nodeId, 1 << channelIndex, (a, b) -> a | b);
+    }
+
+    public Map<UUID, Integer> takeDueChannels() {
+        return take(dueChannels);
+    }
+
+    public void markChannelsDirty(UUID nodeId, int channelMask) {
+        dirtyChannels.merge(nodeId, channelMask, (a, b) -> a | b);
+    }
+
+    public Map<UUID, Integer> takeDirtyChannels() {
+        return take(dirtyChannels);
+    }
+
+    private static Map<UUID, Integer> take(Map<UUID, Integer> masks) {
+        if (masks.isEmpty())
+            return Map.of();
+        Map<UUID, Integer> taken = new LinkedHashMap<>(masks);
+        masks.clear();
+        return taken;
+    }
+
     public boolean isSleeping() {
         return sleeping;
     }
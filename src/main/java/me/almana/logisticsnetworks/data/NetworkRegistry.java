@@ -1,6 +1,9 @@
 package me.almana.logisticsnetworks.data;
 
 import com.mojang.logging.LogUtils;
+import me.almana.logisticsnetworks.Config;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import me.almana.logisticsnetworks.logic.ChannelWakeScheduler;
 import me.almana.logisticsnetworks.logic.TransferEngine;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
@@ -24,10 +27,23 @@ public class NetworkRegistry extends SavedData {
     // Limits & Warnings for beta
     private static final int WARNING_NODE_COUNT = 200;
     private static final int WARNING_DISPATCH_COUNT = 50;
+    private static final int DIAGNOSTICS_INTERVAL_TICKS = 200;
 
     private final Map<UUID, LogisticsNetwork> networks = new HashMap<>();
     private final Set<UUID> dirtyNetworks = new HashSet<>();
 
+    // Carry-over queue for networks that did not fit the tick budget, value is the tick they were queued on
+    private final LinkedHashMap<UUID, Long> dispatchQueue = new LinkedHashMap<>();
+    private int lastDispatchCount = 0;
+    private long lastDispatchLatencyTicks = 0;
+    private long maxDispatchLatencyTicks = 0;
+    private long sleepCount = 0;
+    private long wakeCount = 0;
+
+    // Runtime only, a full pass after load re-queues every active channel
+    @org.jetbrains.annotations.Nullable
+    private ChannelWakeScheduler wakeScheduler;
+
     public NetworkRegistry() {
     }
 
@@ -40,30 +56,147 @@ public class NetworkRegistry extends SavedData {
     }
 
     public void processDirtyNetworks(MinecraftServer server) {
-        if (dirtyNetworks.isEmpty())
-            return;
+        long tick = server.getTickCount();
+        long gameTime = server.overworld().getGameTime();
+
+        if (wakeScheduler == null) {
+            wakeScheduler = new ChannelWakeScheduler(gameTime);
+        }
+        wakeScheduler.advance(gameTime, this::wakeChannel);
+
+        if (!dirtyNetworks.isEmpty()) {
+            if (dirtyNetworks.size() > WARNING_DISPATCH_COUNT) {
+                LOGGER.warn("High load: {} networks dirtied in one tick.", dirtyNetworks.size());
+            }
+            for (UUID id : dirtyNetworks) {
+                dispatchQueue.putIfAbsent(id, tick);
+            }
+            dirtyNetworks.clear();
+        }
 
-        if (dirtyNetworks.size() > WARNING_DISPATCH_COUNT) {
-            LOGGER.warn("High load: Dispatching {} dirty networks in one tick.", dirtyNetworks.size());
+        if (Config.debugMode && tick % DIAGNOSTICS_INTERVAL_TICKS == 0) {
+            logDiagnostics();
         }
 
-        Set<UUID> snapshot = new HashSet<>(dirtyNetworks);
-        dirtyNetworks.clear();
+        if (dispatchQueue.isEmpty()) {
+            lastDispatchCount = 0;
+            lastDispatchLatencyTicks = 0;
+            return;
+        }
+
+        long budget = Config.dispatchBudgetNanos;
+        long start = System.nanoTime();
+        int dispatched = 0;
+        long worstLatency = 0;
+
+        Iterator<Map.Entry<UUID, Long>> it = dispatchQueue.entrySet().iterator();
+        while (it.hasNext()) {
+            // Always make progress, even if a single network blows the budget
+            if (budget > 0 && dispatched > 0 && System.nanoTime() - start >= budget)
+                break;
+
+            Map.Entry<UUID, Long> entry = it.next();
+            UUID id = entry.getKey();
+            worstLatency = Math.max(worstLatency, tick - entry.getValue());
+            it.remove();
+            dispatched++;
 
-        for (UUID id : snapshot) {
             LogisticsNetwork network = networks.get(id);
-            if (network == null)
+            // Sleeping networks only run again once a wake event clears the flag
+            if (network == null || network.isSleeping())
                 continue;
 
             try {
-                boolean moreWork = TransferEngine.processNetwork(network, server);
-                if (moreWork) {
-                    dirtyNetworks.add(id);
-                }
+                TransferEngine.processNetwork(network, server, wakeScheduler);
             } catch (Exception e) {
                 LOGGER.error("Error processing network {}: {}", id, e.getMessage(), e);
             }
+            if (network.isSleeping()) {
+                sleepCount++;
+                if (Config.debugMode) {
+                    LOGGER.debug("Network {} has no runnable exporters, sleeping.", id);
+                }
+            }
+        }
+
+        lastDispatchCount = dispatched;
+        lastDispatchLatencyTicks = worstLatency;
+        maxDispatchLatencyTicks = Math.max(maxDispatchLatencyTicks, worstLatency);
+
+        if (Config.debugMode && !dispatchQueue.isEmpty()) {
+            LOGGER.debug("Dispatch budget exhausted after {} networks, {} carried over (latency {} ticks).",
+                    dispatched, dispatchQueue.size(), worstLatency);
+        }
+    }
+
+    private void wakeChannel(LogisticsNodeEntity node, int channelIndex) {
+        UUID networkId = node.getNetworkId();
+        LogisticsNetwork network = networkId == null ? null : networks.get(networkId);
+        // Polls queued before the network fell asleep are dropped, waking re-queues them
+        if (network == null || network.isSleeping())
+            return;
+        network.markChannelDue(node.getUUID(), channelIndex);
+        dirtyNetworks.add(networkId);
+    }
+
+    // Config change, node join or a redstone change at a gated node. The wake runs a full pass,
+    // which re-queues every channel dropped while asleep and decides whether to sleep again.
+    public void wakeNetwork(UUID networkId) {
+        LogisticsNetwork network = networks.get(networkId);
+        if (network == null)
+            return;
+        if (network.isSleeping()) {
+            network.setSleeping(false);
+            network.markDirty();
+            wakeCount++;
         }
+        dirtyNetworks.add(networkId);
+    }
+
+    public long getSleepCount() {
+        return sleepCount;
+    }
+
+    public long getWakeCount() {
+        return wakeCount;
+    }
+
+    public int getSleepingNetworkCount() {
+        int count = 0;
+        for (LogisticsNetwork network : networks.values()) {
+            if (network.isSleeping()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void logDiagnostics() {
+        LOGGER.debug("Dispatch: {} queued, last {} networks (latency {} ticks, max {}), {} channel wakes scheduled.",
+                getDispatchQueueDepth(), getLastDispatchCount(), getLastDispatchLatencyTicks(),
+                getMaxDispatchLatencyTicks(), getScheduledWakeCount());
+        LOGGER.debug("Sleep: {} of {} networks asleep, {} sleeps and {} wakes so far.",
+                getSleepingNetworkCount(), networks.size(), getSleepCount(), getWakeCount());
+    }
+
+    public int getScheduledWakeCount() {
+        return wakeScheduler == null ? 0 : wakeScheduler.size();
+    }
+
+    public int getDispatchQueueDepth() {
+        return dispatchQueue.size();
+    }
+
+    public int getLastDispatchCount() {
+        return lastDispatchCount;
+    }
+
+    public long getLastDispatchLatencyTicks() {
+        return lastDispatchLatencyTicks;
+    }
+
+    public long getMaxDispatchLatencyTicks() {
+        return maxDispatchLatencyTicks;
     }
 
     public LogisticsNetwork createNetwork() {
@@ -84,6 +217,7 @@ public class NetworkRegistry extends SavedData {
     public void deleteNetwork(UUID id) {
         if (networks.remove(id) != null) {
             dirtyNetworks.remove(id);
+            dispatchQueue.remove(id);
             setDirty();
         }
     }
@@ -97,11 +231,46 @@ public class NetworkRegistry extends SavedData {
     }
 
     public void markNetworkDirty(UUID networkId) {
-        if (networks.containsKey(networkId)) {
+        LogisticsNetwork network = networks.get(networkId);
+        if (network != null) {
+            network.markDirty();
+            wakeNetwork(networkId);
+        }
+    }
+
+    // Neighbor or container change next to one node: re-run its channels and the exporters feeding it
+    public void markNodeDirty(UUID networkId, UUID nodeId) {
+        markChannelsDirty(networkId, nodeId, LogisticsNodeEntity.ALL_CHANNELS_MASK);
+    }
+
+    public void markChannelsDirty(UUID networkId, UUID nodeId, int channelMask) {
+        LogisticsNetwork network = networks.get(networkId);
+        if (network != null) {
+            network.markChannelsDirty(nodeId, channelMask);
             dirtyNetworks.add(networkId);
         }
     }
 
+    // Membership change: recompile the topology on next dispatch, scheduled channels keep their wakes.
+    // A node leaving cannot give a sleeping network work, so it stays asleep.
+    public void invalidateTopology(UUID networkId) {
+        LogisticsNetwork network = networks.get(networkId);
+        if (network != null) {
+            network.invalidateTopology();
+            dirtyNetworks.add(networkId);
+        }
+    }
+
+    // Config or upgrade change on one node: recompile and re-run only the affected channels
+    public void invalidateTopology(UUID networkId, UUID nodeId, int channelMask) {
+        LogisticsNetwork network = networks.get(networkId);
+        if (network != null) {
+            network.invalidateTopology();
+            network.markChannelsDirty(nodeId, channelMask);
+            wakeNetwork(networkId);
+        }
+    }
+
     public void addNodeToNetwork(UUID networkId, UUID nodeId) {
         LogisticsNetwork network = networks.get(networkId);
         if (network != null) {
@@ -110,7 +279,8 @@ public class NetworkRegistry extends SavedData {
                 LOGGER.warn("Network {} has exceeded {} nodes (Count: {}). Performance may degrade.",
                         networkId, WARNING_NODE_COUNT, network.getNodeUuids().size());
             }
-            markNetworkDirty(networkId);
+            markNodeDirty(networkId, nodeId);
+            wakeNetwork(networkId);
             setDirty();
         }
     }
@@ -119,7 +289,7 @@ public class NetworkRegistry extends SavedData {
         LogisticsNetwork network = networks.get(networkId);
         if (network != null) {
             network.removeNode(nodeId);
-            markNetworkDirty(networkId);
+            dirtyNetworks.add(networkId);
 
             if (network.getNodeUuids().isEmpty()) {
                 LOGGER.info("Network {} is empty, deleting.", networkId);
@@ -155,7 +325,10 @@ public class NetworkRegistry extends SavedData {
             }
         }
         if (!registry.networks.isEmpty()) {
-            registry.dirtyNetworks.addAll(registry.networks.keySet());
+            for (LogisticsNetwork network : registry.networks.values()) {
+                network.markDirty();
+                registry.dirtyNetworks.add(network.getId());
+            }
             LOGGER.info("Loaded {} networks.", registry.networks.size());
         }
 
@@ -0,0 +1,126 @@
+package me.almana.logisticsnetworks.data;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+// Server-wide lookup of loaded nodes, maintained from entity join/leave events
+public final class NodeIndex {
+
+    private static final Map<UUID, LogisticsNodeEntity> NODES = new HashMap<>();
+    private static final Map<UUID, Set<UUID>> LOADED_BY_NETWORK = new HashMap<>();
+    // Per level, keyed by BlockPos.asLong() of the attached block
+    private static final Map<ResourceKey<Level>, Long2ObjectMap<LogisticsNodeEntity>> BY_POSITION = new HashMap<>();
+    // Per level, keyed by ChunkPos.asLong() of the attached block
+    private static final Map<ResourceKey<Level>, Long2ObjectMap<List<LogisticsNodeEntity>>> BY_CHUNK = new HashMap<>();
+
+    private NodeIndex() {
+    }
+
+    public static void add(LogisticsNodeEntity node) {
+        LogisticsNodeEntity previous = NODES.put(node.getUUID(), node);
+        if (previous != null && previous != node) {
+            unlink(previous.getUUID(), previous.getNetworkId());
+            unplace(previous, previous.getAttachedPos());
+        }
+        link(node.getUUID(), node.getNetworkId());
+        place(node, node.getAttachedPos());
+    }
+
+    public static void remove(LogisticsNodeEntity node) {
+        if (NODES.remove(node.getUUID(), node)) {
+            unlink(node.getUUID(), node.getNetworkId());
+            unplace(node, node.getAttachedPos());
+        }
+    }
+
+    public static void onAttachedPosChanged(LogisticsNodeEntity node, BlockPos oldPos, BlockPos newPos) {
+        if (NODES.get(node.getUUID()) != node || oldPos.equals(newPos))
+            return;
+        unplace(node, oldPos);
+        place(node, newPos);
+    }
+
+    public static void onNetworkChanged(LogisticsNodeEntity node, @Nullable UUID oldNetworkId,
+            @Nullable UUID newNetworkId) {
+        if (NODES.get(node.getUUID()) != node || Objects.equals(oldNetworkId, newNetworkId))
+            return;
+        unlink(node.getUUID(), oldNetworkId);
+        link(node.getUUID(), newNetworkId);
+    }
+
+    @Nullable
+    public static LogisticsNodeEntity get(UUID nodeId) {
+        return NODES.get(nodeId);
+    }
+
+    @Nullable
+    public static LogisticsNodeEntity getAt(ServerLevel level, BlockPos attachedPos) {
+        Long2ObjectMap<LogisticsNodeEntity> positions = BY_POSITION.get(level.dimension());
+        return positions == null ? null : positions.get(attachedPos.asLong());
+    }
+
+    public static List<LogisticsNodeEntity> getInChunk(ServerLevel level, ChunkPos chunkPos) {
+        Long2ObjectMap<List<LogisticsNodeEntity>> chunks = BY_CHUNK.get(level.dimension());
+        List<LogisticsNodeEntity> nodes = chunks == null ? null : chunks.get(chunkPos.toLong());
+        return nodes == null ? Collections.emptyList() : Collections.unmodifiableList(nodes);
+    }
+
+    public static Set<UUID> getLoadedNodes(UUID networkId) {
+        Set<UUID> loaded = LOADED_BY_NETWORK.get(networkId);
+        return loaded == null ? Collections.emptySet() : Collections.unmodifiableSet(loaded);
+    }
+
+    public static int size() {
+        return NODES.size();
+    }
+
+    public static void clear() {
+        NODES.clear();
+        LOADED_BY_NETWORK.clear();
+        BY_POSITION.clear();
+        BY_CHUNK.clear();
+    }
+
+    private static void place(LogisticsNodeEntity node, BlockPos pos) {
+        BY_POSITION.computeIfAbsent(node.level().dimension(), k -> new Long2ObjectOpenHashMap<>())
+                .put(pos.asLong(), node);
+        BY_CHUNK.computeIfAbsent(node.level().dimension(), k -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(ChunkPos.asLong(pos), k -> new ArrayList<>()).add(node);
+    }
+
+    private static void unplace(LogisticsNodeEntity node, BlockPos pos) {
+        Long2ObjectMap<LogisticsNodeEntity> positions = BY_POSITION.get(node.level().dimension());
+        if (positions != null) {
+            positions.remove(pos.asLong(), node);
+        }
+        Long2ObjectMap<List<LogisticsNodeEntity>> chunks = BY_CHUNK.get(node.level().dimension());
+        List<LogisticsNodeEntity> inChunk = chunks == null ? null : chunks.get(ChunkPos.asLong(pos));
+        if (inChunk != null && inChunk.remove(node) && inChunk.isEmpty()) {
+            chunks.remove(ChunkPos.asLong(pos));
+        }
+    }
+
+    private static void link(UUID nodeId, @Nullable UUID networkId) {
+        if (networkId != null) {
+            LOADED_BY_NETWORK.computeIfAbsent(networkId, k -> new HashSet<>()).add(nodeId);
+        }
+    }
+
+    private static void unlink(UUID nodeId, @Nullable UUID networkId) {
+        if (networkId == null)
+            return;
+        Set<UUID> loaded = LOADED_BY_NETWORK.get(networkId);
+        if (loaded != null && loaded.remove(nodeId) && loaded.isEmpty()) {
+            LOADED_BY_NETWORK.remove(networkId);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package me.almana.logisticsnetworks.entity;
 
 import me.almana.logisticsnetworks.data.ChannelData;
+import me.almana.logisticsnetworks.data.NodeIndex;
+import me.almana.logisticsnetworks.data.RedstoneMode;
+import me.almana.logisticsnetworks.logic.NodeCapabilityCache;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
@@ -12,6 +15,7 @@ import net.minecraft.network.syncher.EntityDataAccessor;
 import net.minecraft.network.syncher.EntityDataSerializers;
 import net.minecraft.network.syncher.SynchedEntityData;
 import net.minecraft.server.level.ServerEntity;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.item.ItemStack;
@@ -27,6 +31,7 @@ public class LogisticsNodeEntity extends Entity {
 
     public static final int UPGRADE_SLOT_COUNT = 4;
     public static final int CHANNEL_COUNT = 9;
+    public static final int ALL_CHANNELS_MASK = (1 << CHANNEL_COUNT) - 1;
 
     // NBT Keys
     private static final String KEY_ATTACHED_POS = "AttachedPos";
@@ -54,6 +59,13 @@ public class LogisticsNodeEntity extends Entity {
     private final long[] channelCooldowns = new long[CHANNEL_COUNT];
     private final int[] roundRobinIndex = new int[CHANNEL_COUNT];
     private final float[] backoffTicks = new float[CHANNEL_COUNT];
+    private final long[] scheduledWake = new long[CHANNEL_COUNT];
+    private final int[] slotCursor = new int[CHANNEL_COUNT];
+    private final long[] idleFingerprint = new long[CHANNEL_COUNT];
+    private final long[] idleFingerprintExpiry = new long[CHANNEL_COUNT];
+    private final NodeCapabilityCache capabilityCache = new NodeCapabilityCache(this);
+    // Neighbour signal at the attached block, -1 until read. Kept current by neighbour updates, not polled.
+    private int redstoneSignal = -1;
 
     public LogisticsNodeEntity(EntityType<LogisticsNodeEntity> entityType, Level level) {
         super(entityType, level);
@@ -65,6 +77,7 @@ public class LogisticsNodeEntity extends Entity {
         this.channels[0] = new ChannelData(true);
 
         Arrays.fill(this.upgradeItems, ItemStack.EMPTY);
+        Arrays.fill(this.scheduledWake, -1L);
     }
 
     public LogisticsNodeEntity(EntityType<LogisticsNodeEntity> entityType, Level level, BlockPos pos) {
@@ -160,7 +173,12 @@ public class LogisticsNodeEntity extends Entity {
     }
 
     public void setAttachedPos(BlockPos pos) {
+        BlockPos previous = getAttachedPos();
         this.entityData.set(ATTACHED_POS, pos);
+        this.redstoneSignal = -1;
+        if (!level().isClientSide()) {
+            NodeIndex.onAttachedPosChanged(this, previous, pos);
+        }
     }
 
     public BlockPos getAttachedPos() {
@@ -189,7 +207,13 @@ public class LogisticsNodeEntity extends Entity {
     }
 
     public void setNetworkId(@Nullable UUID networkId) {
+        UUID previous = getNetworkId();
         this.entityData.set(NETWORK_ID, Optional.ofNullable(networkId));
+        // Unlinked nodes miss signal refreshes
+        this.redstoneSignal = -1;
+        if (!level().isClientSide()) {
+            NodeIndex.onNetworkChanged(this, previous, networkId);
+        }
     }
 
     public boolean isRenderVisible() {
@@ -249,6 +273,86 @@ public class LogisticsNodeEntity extends Entity {
         backoffTicks[channelIndex] = value;
     }
 
+    // Source slot the channel's next item operation starts from
+    public int getSlotCursor(int channelIndex) {
+        return slotCursor[channelIndex];
+    }
+
+    public void setSlotCursor(int channelIndex, int slot) {
+        slotCursor[channelIndex] = slot;
+    }
+
+    // Inventories fingerprint after the channel's last failed move, 0 when none is recorded
+    public long getIdleFingerprint(int channelIndex) {
+        return idleFingerprint[channelIndex];
+    }
+
+    public long getIdleFingerprintExpiry(int channelIndex) {
+        return idleFingerprintExpiry[channelIndex];
+    }
+
+    public void setIdleFingerprint(int channelIndex, long fingerprint, long expiresAt) {
+        idleFingerprint[channelIndex] = fingerprint;
+        idleFingerprintExpiry[channelIndex] = expiresAt;
+    }
+
+    public void clearIdleFingerprints(int channelMask) {
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            if ((channelMask & (1 << i)) != 0) {
+                idleFingerprint[i] = 0L;
+            }
+        }
+    }
+
+    public NodeCapabilityCache getCapabilityCache() {
+        return capabilityCache;
+    }
+
+    public int getRedstoneSignal() {
+        if (redstoneSignal < 0) {
+            redstoneSignal = level() instanceof ServerLevel level ? level.getBestNeighborSignal(getAttachedPos()) : 0;
+        }
+        return redstoneSignal;
+    }
+
+    // Re-reads a signal that has been read before, true when it crossed between off and on
+    public boolean refreshRedstoneSignal() {
+        if (redstoneSignal < 0 || !(level() instanceof ServerLevel level))
+            return false;
+        int previous = redstoneSignal;
+        redstoneSignal = level.getBestNeighborSignal(getAttachedPos());
+        return (previous > 0) != (redstoneSignal > 0);
+    }
+
+    // Forgets the signal so the next read samples it again, true when one was cached
+    public boolean clearRedstoneSignal() {
+        boolean cached = redstoneSignal >= 0;
+        redstoneSignal = -1;
+        return cached;
+    }
+
+    // Enabled channels whose activity follows the signal
+    public int getRedstoneGatedMask() {
+        int mask = 0;
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            ChannelData channel = channels[i];
+            if (channel != null && channel.isEnabled() && (channel.getRedstoneMode() == RedstoneMode.HIGH
+                    || channel.getRedstoneMode() == RedstoneMode.LOW)) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // Game tick the channel is queued to wake on, -1 when not queued
+    public long getScheduledWake(int channelIndex) {
+        return scheduledWake[channelIndex];
+    }
+
+    public void setScheduledWake(int channelIndex, long tick) {
+        scheduledWake[channelIndex] = tick;
+    }
+
     public void dropUpgrades() {
         for (int i = 0; i < UPGRADE_SLOT_COUNT; i++) {
             ItemStack stack = upgradeItems[i];
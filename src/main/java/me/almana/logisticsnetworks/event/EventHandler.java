@@ -4,28 +4,39 @@ import me.almana.logisticsnetworks.Config;
 import me.almana.logisticsnetworks.Logisticsnetworks;
 import me.almana.logisticsnetworks.data.LogisticsNetwork;
 import me.almana.logisticsnetworks.data.NetworkRegistry;
+import me.almana.logisticsnetworks.data.NodeIndex;
 import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import me.almana.logisticsnetworks.filter.RegistryIdIndex;
 import me.almana.logisticsnetworks.item.WrenchItem;
 import me.almana.logisticsnetworks.menu.NodeMenu;
 import me.almana.logisticsnetworks.registration.Registration;
 import me.almana.logisticsnetworks.upgrade.NodeUpgradeData;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.Slot;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.phys.AABB;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
 import net.neoforged.neoforge.common.util.TriState;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
 import net.neoforged.neoforge.event.entity.EntityJoinLevelEvent;
+import net.neoforged.neoforge.event.entity.EntityLeaveLevelEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerContainerEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerInteractEvent;
 import net.neoforged.neoforge.event.level.BlockEvent;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.server.ServerLifecycleHooks;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.UUID;
@@ -40,9 +51,49 @@ public class EventHandler {
         if (!(event.getLevel() instanceof ServerLevel serverLevel))
             return;
 
+        NodeIndex.add(node);
         UUID networkId = node.getNetworkId();
         if (networkId != null) {
-            NetworkRegistry.get(serverLevel).markNetworkDirty(networkId);
+            NetworkRegistry.get(serverLevel).invalidateTopology(networkId, node.getUUID(),
+                    LogisticsNodeEntity.ALL_CHANNELS_MASK);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (!(event.getEntity() instanceof LogisticsNodeEntity node) || node.level().isClientSide())
+            return;
+        if (!(event.getLevel() instanceof ServerLevel serverLevel))
+            return;
+
+        NodeIndex.remove(node);
+        UUID networkId = node.getNetworkId();
+        if (networkId != null) {
+            NetworkRegistry.get(serverLevel).invalidateTopology(networkId);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        NodeIndex.clear();
+    }
+
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        // The index is only read on the server thread, a client tag sync must not swap it mid-pass
+        if (event.getUpdateCause() != TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD)
+            return;
+        // Compiled channel filters and topologies see the generation bump and rebuild on next use
+        RegistryIdIndex.invalidate();
+
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        ServerLevel overworld = server != null ? server.overworld() : null;
+        if (overworld == null)
+            return;
+        // Routes pruned against the old tags may be valid now
+        NetworkRegistry registry = NetworkRegistry.get(overworld);
+        for (UUID networkId : List.copyOf(registry.getAllNetworks().keySet())) {
+            registry.markNetworkDirty(networkId);
         }
     }
 
@@ -57,6 +108,15 @@ public class EventHandler {
         Level level = event.getLevel();
         BlockPos pos = event.getPos();
 
+        if (level instanceof ServerLevel serverLevel) {
+            LogisticsNodeEntity node = NodeIndex.getAt(serverLevel, pos);
+            if (node != null && node.isActive()) {
+                event.setUseBlock(TriState.FALSE);
+            }
+            return;
+        }
+
+        // Client has no index, search nearby entities
         List<LogisticsNodeEntity> nodes = level.getEntitiesOfClass(LogisticsNodeEntity.class,
                 new AABB(pos).inflate(0.5));
         for (LogisticsNodeEntity node : nodes) {
@@ -72,12 +132,67 @@ public class EventHandler {
         if (event.getLevel().isClientSide() || !(event.getLevel() instanceof ServerLevel level))
             return;
 
-        AABB searchBox = new AABB(event.getPos()).inflate(1.0);
-        List<LogisticsNodeEntity> nodes = level.getEntitiesOfClass(LogisticsNodeEntity.class, searchBox);
+        BlockPos pos = event.getPos();
+        LogisticsNodeEntity node = NodeIndex.getAt(level, pos);
+        if (node != null && node.isActive() && node.getNetworkId() != null) {
+            NetworkRegistry.get(level).markNodeDirty(node.getNetworkId(), node.getUUID());
+        }
 
-        for (LogisticsNodeEntity node : nodes) {
-            if (node.isActive() && node.getNetworkId() != null && node.getAttachedPos().equals(event.getPos())) {
-                NetworkRegistry.get(level).markNetworkDirty(node.getNetworkId());
+        // A change at or next to an attached block is the only way its neighbour signal moves
+        refreshRedstoneSignal(level, node);
+        for (Direction direction : Direction.values()) {
+            refreshRedstoneSignal(level, NodeIndex.getAt(level, pos.relative(direction)));
+        }
+    }
+
+    private static void refreshRedstoneSignal(ServerLevel level, @Nullable LogisticsNodeEntity node) {
+        if (node == null || !node.isActive() || node.getNetworkId() == null || !node.refreshRedstoneSignal())
+            return;
+        wakeRedstoneGated(level, node);
+    }
+
+    // Only the channels whose activity follows the signal are woken, along with the exporters feeding them
+    private static void wakeRedstoneGated(ServerLevel level, LogisticsNodeEntity node) {
+        int mask = node.getRedstoneGatedMask();
+        if (mask == 0)
+            return;
+        NetworkRegistry registry = NetworkRegistry.get(level);
+        registry.markChannelsDirty(node.getNetworkId(), node.getUUID(), mask);
+        registry.wakeNetwork(node.getNetworkId());
+    }
+
+    // Blocks in a freshly loaded chunk never sent neighbour updates, so signals read next to it are stale.
+    // The signal is re-read on the next pass rather than here, while the chunk is still being promoted.
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if (!(event.getLevel() instanceof ServerLevel level))
+            return;
+
+        ChunkPos chunkPos = event.getChunk().getPos();
+        clearRedstoneSignals(level, chunkPos);
+        for (Direction direction : Direction.Plane.HORIZONTAL) {
+            clearRedstoneSignals(level,
+                    new ChunkPos(chunkPos.x + direction.getStepX(), chunkPos.z + direction.getStepZ()));
+        }
+    }
+
+    // Nodes attached in the chunk drop out of the loaded subset, a network left without work then sleeps
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        if (!(event.getLevel() instanceof ServerLevel level))
+            return;
+
+        for (LogisticsNodeEntity node : NodeIndex.getInChunk(level, event.getChunk().getPos())) {
+            if (node.getNetworkId() != null) {
+                NetworkRegistry.get(level).invalidateTopology(node.getNetworkId());
+            }
+        }
+    }
+
+    private static void clearRedstoneSignals(ServerLevel level, ChunkPos chunkPos) {
+        for (LogisticsNodeEntity node : List.copyOf(NodeIndex.getInChunk(level, chunkPos))) {
+            if (node.isActive() && node.getNetworkId() != null && node.clearRedstoneSignal()) {
+                wakeRedstoneGated(level, node);
             }
         }
     }
@@ -88,23 +203,20 @@ public class EventHandler {
             return;
 
         BlockPos pos = event.getPos();
-        List<LogisticsNodeEntity> nodes = serverLevel.getEntitiesOfClass(LogisticsNodeEntity.class,
-                new AABB(pos).inflate(0.1));
+        LogisticsNodeEntity node = NodeIndex.getAt(serverLevel, pos);
+        if (node == null)
+            return;
 
-        for (LogisticsNodeEntity node : nodes) {
-            if (node.getAttachedPos().equals(pos)) {
-                if (node.getNetworkId() != null) {
-                    NetworkRegistry.get(serverLevel).removeNodeFromNetwork(node.getNetworkId(), node.getUUID());
-                }
+        if (node.getNetworkId() != null) {
+            NetworkRegistry.get(serverLevel).removeNodeFromNetwork(node.getNetworkId(), node.getUUID());
+        }
 
-                if (Config.dropNodeItem) {
-                    node.spawnAtLocation(Registration.LOGISTICS_NODE_ITEM.get());
-                }
-                node.dropFilters();
-                node.dropUpgrades();
-                node.discard();
-            }
+        if (Config.dropNodeItem) {
+            node.spawnAtLocation(Registration.LOGISTICS_NODE_ITEM.get());
         }
+        node.dropFilters();
+        node.dropUpgrades();
+        node.discard();
     }
 
     @SubscribeEvent
@@ -133,12 +245,9 @@ public class EventHandler {
         }
 
         if (containerPos != null) {
-            List<LogisticsNodeEntity> nodes = level.getEntitiesOfClass(LogisticsNodeEntity.class,
-                    new AABB(containerPos).inflate(0.1));
-            for (LogisticsNodeEntity node : nodes) {
-                if (node.isActive() && node.getNetworkId() != null && node.getAttachedPos().equals(containerPos)) {
-                    NetworkRegistry.get(level).markNetworkDirty(node.getNetworkId());
-                }
+            LogisticsNodeEntity node = NodeIndex.getAt(level, containerPos);
+            if (node != null && node.isActive() && node.getNetworkId() != null) {
+                NetworkRegistry.get(level).markNodeDirty(node.getNetworkId(), node.getUUID());
             }
         }
     }
@@ -0,0 +1,337 @@
+package me.almana.logisticsnetworks.filter;
+
+import me.almana.logisticsnetworks.data.FilterMode;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.ItemStack;
+import net.neoforged.neoforge.fluids.FluidStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+// Immutable matcher for one channel's filter slots, built once so matching never reads filter item data
+public final class CompiledFilter {
+
+    public static final CompiledFilter EMPTY = new CompiledFilter(-1, FilterMode.MATCH_ANY, List.of(), List.of(),
+            List.of(), null);
+
+    private interface ItemRule {
+        boolean blacklist();
+
+        boolean matches(ItemStack candidate, HolderLookup.Provider provider, @Nullable NbtMatchCache cache);
+    }
+
+    private interface FluidRule {
+        boolean blacklist();
+
+        boolean matches(FluidStack candidate, HolderLookup.Provider provider);
+    }
+
+    // Item set, tag and mod entries all reduce to a set of registry ids
+    private record ItemIdRule(BitSet ids, boolean blacklist) implements ItemRule {
+        @Override
+        public boolean matches(ItemStack candidate, HolderLookup.Provider provider, @Nullable NbtMatchCache cache) {
+            return RegistryIdIndex.contains(ids, RegistryIdIndex.id(candidate.getItem()));
+        }
+    }
+
+    // A filter with a path but no value selected never matches, as before compiling
+    private record ItemNbtRule(String path, @Nullable NbtPath compiled, @Nullable Tag expected, boolean blacklist)
+            implements ItemRule {
+        @Override
+        public boolean matches(ItemStack candidate, HolderLookup.Provider provider, @Nullable NbtMatchCache cache) {
+            if (expected == null)
+                return false;
+            if (compiled == null) {
+                return NbtFilterData.matchesValue(NbtFilterData.getSerializedComponents(candidate, provider), path,
+                        expected);
+            }
+            Object value = compiled.patchedValue(candidate);
+            if (value == null)
+                return false;
+            if (cache == null)
+                return compiled.matches(value, expected, provider);
+            return cache.matches(this, value, v -> compiled.matches(v, expected, provider));
+        }
+    }
+
+    private record FluidIdRule(BitSet ids, boolean componentless, boolean blacklist) implements FluidRule {
+        @Override
+        public boolean matches(FluidStack candidate, HolderLookup.Provider provider) {
+            // Fluid filter entries carry no components, same as FluidStack.isSameFluidSameComponents
+            if (componentless && !candidate.getComponentsPatch().isEmpty())
+                return false;
+            return RegistryIdIndex.contains(ids, RegistryIdIndex.id(candidate.getFluid()));
+        }
+    }
+
+    private record FluidNbtRule(String path, @Nullable NbtPath compiled, @Nullable Tag expected, boolean blacklist)
+            implements FluidRule {
+        @Override
+        public boolean matches(FluidStack candidate, HolderLookup.Provider provider) {
+            if (expected == null)
+                return false;
+            if (compiled == null) {
+                return NbtFilterData.matchesValue(NbtFilterData.getSerializedComponents(candidate, provider), path,
+                        expected);
+            }
+            return compiled.matches(compiled.patchedValue(candidate), expected, provider);
+        }
+    }
+
+    // Items accepted when the verdict depends on the item id alone: ids, or every id except them when inverted
+    public record ItemIdAcceptance(BitSet ids, boolean inverted) {
+        public boolean accepts(int id) {
+            return inverted != RegistryIdIndex.contains(ids, id);
+        }
+
+        // False only when no item id passes both
+        public boolean intersects(ItemIdAcceptance other) {
+            if (inverted && other.inverted)
+                return true;
+            if (!inverted && !other.inverted)
+                return ids.intersects(other.ids);
+            BitSet remaining = (BitSet) (inverted ? other.ids : ids).clone();
+            remaining.andNot(inverted ? ids : other.ids);
+            return !remaining.isEmpty();
+        }
+    }
+
+    // Amount filter slots folded together: exporters keep the highest, importers stop at the lowest
+    private record AmountThresholds(int highest, int lowest) {
+    }
+
+    private record DurabilityRule(DurabilityFilterData.Operator operator, int threshold) {
+        boolean matches(ItemStack candidate) {
+            if (!candidate.isDamageableItem())
+                return false;
+            int remaining = candidate.getMaxDamage() - candidate.getDamageValue();
+            return switch (operator) {
+                case LESS_OR_EQUAL -> remaining <= threshold;
+                case EQUAL -> remaining == threshold;
+                case GREATER_OR_EQUAL -> remaining >= threshold;
+            };
+        }
+    }
+
+    private final boolean matchAll;
+    private final ItemRule[] itemRules;
+    private final FluidRule[] fluidRules;
+    private final DurabilityRule[] durabilityRules;
+    private final boolean hasItemWhitelist;
+    private final boolean hasFluidWhitelist;
+    private final boolean hasItemNbtRule;
+    // Tag rules hold ids resolved against this RegistryIdIndex generation
+    private final int generation;
+    @Nullable
+    private final ItemIdAcceptance itemIdAcceptance;
+    @Nullable
+    private final AmountThresholds amountThresholds;
+
+    private CompiledFilter(int generation, FilterMode mode, List<ItemRule> itemRules, List<FluidRule> fluidRules,
+            List<DurabilityRule> durabilityRules, @Nullable AmountThresholds amountThresholds) {
+        this.generation = generation;
+        this.matchAll = mode == FilterMode.MATCH_ALL;
+        this.itemRules = itemRules.toArray(new ItemRule[0]);
+        this.fluidRules = fluidRules.toArray(new FluidRule[0]);
+        this.durabilityRules = durabilityRules.toArray(new DurabilityRule[0]);
+        this.hasItemWhitelist = itemRules.stream().anyMatch(r -> !r.blacklist());
+        this.hasFluidWhitelist = fluidRules.stream().anyMatch(r -> !r.blacklist());
+        this.hasItemNbtRule = itemRules.stream().anyMatch(r -> r instanceof ItemNbtRule);
+        this.amountThresholds = amountThresholds;
+        this.itemIdAcceptance = hasItemNbtRule || !durabilityRules.isEmpty() ? null : resolveItemIds(this.itemRules);
+    }
+
+    private ItemIdAcceptance resolveItemIds(ItemRule[] rules) {
+        BitSet blacklisted = new BitSet();
+        BitSet whitelisted = null;
+        for (ItemRule rule : rules) {
+            BitSet ids = ((ItemIdRule) rule).ids();
+            if (rule.blacklist()) {
+                blacklisted.or(ids);
+            } else if (whitelisted == null) {
+                whitelisted = (BitSet) ids.clone();
+            } else if (matchAll) {
+                whitelisted.and(ids);
+            } else {
+                whitelisted.or(ids);
+            }
+        }
+        if (whitelisted == null)
+            return new ItemIdAcceptance(blacklisted, true);
+        whitelisted.andNot(blacklisted);
+        return new ItemIdAcceptance(whitelisted, false);
+    }
+
+    // Mirrors the slot checks in FilterLogic: each filter stack yields at most one item and one fluid rule
+    public static CompiledFilter compile(ItemStack[] filters, FilterMode mode, HolderLookup.Provider provider) {
+        if (filters == null)
+            return EMPTY;
+
+        List<ItemRule> itemRules = new ArrayList<>();
+        List<FluidRule> fluidRules = new ArrayList<>();
+        List<DurabilityRule> durabilityRules = new ArrayList<>();
+        int generation = RegistryIdIndex.generation();
+        AmountThresholds amountThresholds = null;
+
+        for (ItemStack filter : filters) {
+            if (filter.isEmpty())
+                continue;
+
+            if (FilterItemData.isFilterItem(filter)) {
+                boolean blacklist = FilterItemData.isBlacklist(filter);
+                BitSet items = new BitSet();
+                BitSet fluids = new BitSet();
+                int capacity = FilterItemData.getCapacity(filter);
+                for (int i = 0; i < capacity; i++) {
+                    ItemStack entry = FilterItemData.getEntry(filter, i, provider);
+                    if (!entry.isEmpty()) {
+                        items.set(RegistryIdIndex.id(entry.getItem()));
+                    }
+                    FluidStack fluidEntry = FilterItemData.getFluidEntry(filter, i);
+                    if (!fluidEntry.isEmpty()) {
+                        fluids.set(RegistryIdIndex.id(fluidEntry.getFluid()));
+                    }
+                }
+                if (FilterItemData.hasAnyItemEntries(filter)) {
+                    itemRules.add(new ItemIdRule(items, blacklist));
+                }
+                if (FilterItemData.hasAnyFluidEntries(filter)) {
+                    fluidRules.add(new FluidIdRule(fluids, true, blacklist));
+                }
+            } else if (TagFilterData.isTagFilterItem(filter)) {
+                List<String> tags = TagFilterData.getTagFilters(filter);
+                ResourceLocation id = tags.isEmpty() ? null : ResourceLocation.tryParse(tags.get(0));
+                if (id == null)
+                    continue;
+                boolean blacklist = TagFilterData.isBlacklist(filter);
+                if (TagFilterData.getTargetType(filter) == FilterTargetType.ITEMS) {
+                    itemRules.add(new ItemIdRule(RegistryIdIndex.itemTag(TagKey.create(Registries.ITEM, id)),
+                            blacklist));
+                } else {
+                    fluidRules.add(new FluidIdRule(RegistryIdIndex.fluidTag(TagKey.create(Registries.FLUID, id)),
+                            false, blacklist));
+                }
+            } else if (ModFilterData.isModFilter(filter)) {
+                List<String> mods = ModFilterData.getModFilters(filter);
+                if (mods.isEmpty())
+                    continue;
+                boolean blacklist = ModFilterData.isBlacklist(filter);
+                if (ModFilterData.getTargetType(filter) == FilterTargetType.ITEMS) {
+                    itemRules.add(new ItemIdRule(RegistryIdIndex.itemNamespaces(mods), blacklist));
+                } else {
+                    fluidRules.add(new FluidIdRule(RegistryIdIndex.fluidNamespaces(mods), false, blacklist));
+                }
+            } else if (NbtFilterData.isNbtFilter(filter)) {
+                String path = NbtFilterData.getSelectedPath(filter);
+                Tag expected = NbtFilterData.getSelectedValue(filter);
+                if (path == null)
+                    continue;
+                boolean blacklist = NbtFilterData.isBlacklist(filter);
+                boolean fluidPath = NbtFilterData.isFluidPath(path);
+                FilterTargetType target = NbtFilterData.getTargetType(filter);
+                if (target == FilterTargetType.ITEMS && !fluidPath) {
+                    itemRules.add(new ItemNbtRule(path, NbtPath.compile(path), expected, blacklist));
+                } else if (target == FilterTargetType.FLUIDS && fluidPath) {
+                    fluidRules.add(new FluidNbtRule(path, NbtPath.compile(path), expected, blacklist));
+                }
+            } else if (AmountFilterData.isAmountFilterItem(filter)) {
+                int amount = AmountFilterData.getAmount(filter);
+                amountThresholds = amountThresholds == null ? new AmountThresholds(amount, amount)
+                        : new AmountThresholds(Math.max(amountThresholds.highest(), amount),
+                                Math.min(amountThresholds.lowest(), amount));
+            } else if (DurabilityFilterData.isDurabilityFilterItem(filter)) {
+                durabilityRules.add(new DurabilityRule(DurabilityFilterData.getOperator(filter),
+                        DurabilityFilterData.getValue(filter)));
+            }
+        }
+
+        if (itemRules.isEmpty() && fluidRules.isEmpty() && durabilityRules.isEmpty() && amountThresholds == null)
+            return EMPTY;
+        return new CompiledFilter(generation, mode, itemRules, fluidRules, durabilityRules, amountThresholds);
+    }
+
+    // True once tags have reloaded since compiling; EMPTY never goes stale
+    public boolean isStale() {
+        return generation >= 0 && generation != RegistryIdIndex.generation();
+    }
+
+    // Null when item components take part in matching
+    @Nullable
+    public ItemIdAcceptance getItemIdAcceptance() {
+        return itemIdAcceptance;
+    }
+
+    public boolean hasAmountThreshold() {
+        return amountThresholds != null;
+    }
+
+    // Amount an exporter keeps back in its source
+    public int getExportThreshold() {
+        return amountThresholds == null ? 0 : amountThresholds.highest();
+    }
+
+    // Amount an importer fills its target up to
+    public int getImportThreshold() {
+        return amountThresholds == null ? Integer.MAX_VALUE : amountThresholds.lowest();
+    }
+
+    public boolean hasItemNbtRule() {
+        return hasItemNbtRule;
+    }
+
+    // The cache is optional and only consulted by NBT rules
+    public boolean matchesItem(ItemStack candidate, HolderLookup.Provider provider, @Nullable NbtMatchCache cache) {
+        if (candidate.isEmpty())
+            return false;
+
+        for (DurabilityRule rule : durabilityRules) {
+            if (!rule.matches(candidate))
+                return false;
+        }
+
+        boolean anyWhitelistMatched = false;
+        boolean allWhitelistsMatched = true;
+        for (ItemRule rule : itemRules) {
+            boolean matched = rule.matches(candidate, provider, cache);
+            if (rule.blacklist()) {
+                if (matched)
+                    return false;
+            } else if (matched) {
+                anyWhitelistMatched = true;
+            } else {
+                allWhitelistsMatched = false;
+            }
+        }
+
+        if (!hasItemWhitelist)
+            return true;
+        return matchAll ? allWhitelistsMatched : anyWhitelistMatched;
+    }
+
+    public boolean matchesFluid(FluidStack candidate, HolderLookup.Provider provider) {
+        if (candidate.isEmpty())
+            return false;
+
+        boolean anyWhitelistMatched = false;
+        boolean allWhitelistsMatched = true;
+        for (FluidRule rule : fluidRules) {
+            boolean matched = rule.matches(candidate, provider);
+            if (rule.blacklist()) {
+                if (matched)
+                    return false;
+            } else if (matched) {
+                anyWhitelistMatched = true;
+            } else {
+                allWhitelistsMatched = false;
+            }
+        }
+
+        if (!hasFluidWhitelist)
+            return true;
+        return matchAll ? allWhitelistsMatched : anyWhitelistMatched;
+    }
+}
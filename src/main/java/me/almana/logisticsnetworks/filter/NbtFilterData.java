@@ -94,6 +94,12 @@ public final class NbtFilterData {
         return path.isEmpty() ? null : path;
     }
 
+    public static @Nullable Tag getSelectedValue(ItemStack stack) {
+        if (!hasSelection(stack))
+            return null;
+        return getRoot(stack).get(KEY_VALUE);
+    }
+
     public static String getSelectedValueDisplay(ItemStack stack) {
         if (!hasSelection(stack))
             return "";
@@ -180,7 +186,12 @@ public final class NbtFilterData {
         if (expected == null)
             return false;
 
-        Tag actual = resolvePathValue(components, path);
+        return matchesValue(components, path, expected);
+    }
+
+    // Compares in place, without copying the resolved tag
+    public static boolean matchesValue(@Nullable CompoundTag components, String path, Tag expected) {
+        Tag actual = findPathValue(components, path);
         return actual != null && expected.equals(actual);
     }
 
@@ -212,6 +223,11 @@ public final class NbtFilterData {
     }
 
     public static @Nullable Tag resolvePathValue(@Nullable CompoundTag components, String path) {
+        Tag found = findPathValue(components, path);
+        return found == null ? null : found.copy();
+    }
+
+    private static @Nullable Tag findPathValue(@Nullable CompoundTag components, String path) {
         if (components == null)
             return null;
 
@@ -220,14 +236,13 @@ public final class NbtFilterData {
             return null;
 
         if (p.equals("components") || p.equals("fluid.components")) {
-            return components.copy();
+            return components;
         }
 
         p = stripPrefix(p, "components.");
         p = stripPrefix(p, "fluid.components.");
 
-        Tag found = traverseTag(components, p);
-        return found == null ? null : found.copy();
+        return traverseTag(components, p);
     }
 
     private static String stripPrefix(String s, String prefix) {
@@ -267,7 +282,7 @@ public final class NbtFilterData {
         return null;
     }
 
-    private static @Nullable CompoundTag getSerializedComponents(FluidStack stack, HolderLookup.Provider provider) {
+    public static @Nullable CompoundTag getSerializedComponents(FluidStack stack, HolderLookup.Provider provider) {
         if (stack == null || stack.isEmpty() || provider == null)
             return null;
 
@@ -0,0 +1,22 @@
+package me.almana.logisticsnetworks.filter;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Per transfer pass memo of NBT rule results. Keyed by the component value instance,
+// which every copy of a stack shares until it is modified.
+public final class NbtMatchCache {
+
+    private final Map<Object, Map<Object, Boolean>> results = new IdentityHashMap<>();
+
+    boolean matches(Object rule, Object componentValue, Predicate<Object> matcher) {
+        Map<Object, Boolean> perRule = results.computeIfAbsent(rule, k -> new IdentityHashMap<>());
+        Boolean cached = perRule.get(componentValue);
+        if (cached == null) {
+            cached = matcher.test(componentValue);
+            perRule.put(componentValue, cached);
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,162 @@
+package me.almana.logisticsnetworks.filter;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.component.DataComponentType;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.neoforged.neoforge.fluids.FluidStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// NBT filter path split into segments once, bound to the data component named by its first segment.
+// Only that component is encoded, matching what ItemStack.save would write under "components".
+final class NbtPath {
+
+    private static final CompoundTag REMOVED_MARKER = new CompoundTag();
+
+    private final DataComponentType<?> type;
+    private final boolean removed;
+    // String for compound keys, Integer for list indices
+    private final Object[] segments;
+
+    private NbtPath(DataComponentType<?> type, boolean removed, Object[] segments) {
+        this.type = type;
+        this.removed = removed;
+        this.segments = segments;
+    }
+
+    // Null when the path does not start with a known component, callers fall back to full serialization
+    @Nullable
+    static NbtPath compile(@Nullable String rawPath) {
+        if (rawPath == null)
+            return null;
+        String path = rawPath.trim();
+        if (path.startsWith("fluid.components.")) {
+            path = path.substring("fluid.components.".length());
+        } else if (path.startsWith("components.")) {
+            path = path.substring("components.".length());
+        }
+
+        List<Object> tokens = tokenize(path);
+        if (tokens == null || tokens.isEmpty() || !(tokens.get(0) instanceof String componentKey))
+            return null;
+
+        boolean removed = componentKey.startsWith("!");
+        String key = removed ? componentKey.substring(1) : componentKey;
+        // The serialized patch keys on the full id, so "damage" must not resolve to "minecraft:damage"
+        ResourceLocation id = ResourceLocation.tryParse(key);
+        if (id == null || !id.toString().equals(key))
+            return null;
+        DataComponentType<?> type = BuiltInRegistries.DATA_COMPONENT_TYPE.get(id);
+        if (type == null || type.codec() == null)
+            return null;
+
+        return new NbtPath(type, removed, tokens.subList(1, tokens.size()).toArray());
+    }
+
+    DataComponentType<?> type() {
+        return type;
+    }
+
+    // Component value the path reads from, or null when the stack would not serialize it
+    @Nullable
+    Object patchedValue(ItemStack stack) {
+        Object value = stack.get(type);
+        Object prototype = stack.getPrototype().get(type);
+        if (removed)
+            return value == null && prototype != null ? REMOVED_MARKER : null;
+        if (value == null || value == prototype || Objects.equals(value, prototype))
+            return null;
+        return value;
+    }
+
+    @Nullable
+    Object patchedValue(FluidStack stack) {
+        // Fluid stacks have no prototype components, everything set is part of the patch
+        if (removed)
+            return null;
+        return stack.get(type);
+    }
+
+    boolean matches(@Nullable Object patchedValue, Tag expected, HolderLookup.Provider provider) {
+        if (patchedValue == null)
+            return false;
+        Tag root = patchedValue == REMOVED_MARKER ? REMOVED_MARKER : encode(type, patchedValue, provider);
+        Tag actual = traverse(root);
+        return actual != null && expected.equals(actual);
+    }
+
+    @Nullable
+    private Tag traverse(@Nullable Tag root) {
+        Tag current = root;
+        for (Object segment : segments) {
+            if (current == null)
+                return null;
+            if (segment instanceof String key) {
+                current = current instanceof CompoundTag compound ? compound.get(key) : null;
+            } else {
+                int index = (Integer) segment;
+                current = current instanceof ListTag list && index < list.size() ? list.get(index) : null;
+            }
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static <T> Tag encode(DataComponentType<T> type, Object value, HolderLookup.Provider provider) {
+        Codec<T> codec = type.codec();
+        if (codec == null)
+            return null;
+        return codec.encodeStart(provider.createSerializationContext(NbtOps.INSTANCE), (T) value)
+                .result()
+                .orElse(null);
+    }
+
+    // Same grammar as NbtFilterData.traverseTag: keys separated by '.', list indices as [n]
+    @Nullable
+    private static List<Object> tokenize(String path) {
+        List<Object> tokens = new ArrayList<>();
+        int len = path.length();
+        int i = 0;
+
+        while (i < len) {
+            int start = i;
+            while (i < len && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                i++;
+            }
+            if (i > start) {
+                tokens.add(path.substring(start, i));
+            }
+
+            while (i < len && path.charAt(i) == '[') {
+                i++;
+                int numStart = i;
+                while (i < len && Character.isDigit(path.charAt(i))) {
+                    i++;
+                }
+                if (i >= len || path.charAt(i) != ']' || i == numStart)
+                    return null;
+                try {
+                    tokens.add(Integer.parseInt(path.substring(numStart, i)));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                i++;
+            }
+            if (i < len && path.charAt(i) == '.') {
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,113 @@
+package me.almana.logisticsnetworks.filter;
+
+import me.almana.logisticsnetworks.registration.ModTags;
+import net.minecraft.core.Holder;
+import net.minecraft.core.Registry;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.material.Fluid;
+
+import java.util.*;
+
+// Item and fluid registry ids resolved into bitsets, so tag, mod and resource blacklist checks are one bit test.
+// Entries are built on first use and thrown away on every server tag reload, all on the server thread.
+public final class RegistryIdIndex {
+
+    private static final class Snapshot {
+        private final int generation;
+        private final Map<TagKey<Item>, BitSet> itemTags = new HashMap<>();
+        private final Map<TagKey<Fluid>, BitSet> fluidTags = new HashMap<>();
+        private final Map<String, BitSet> itemNamespaces = new HashMap<>();
+        private final Map<String, BitSet> fluidNamespaces = new HashMap<>();
+
+        private Snapshot(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    // Swapped whole on reload, so a reader never sees a half-cleared index
+    private static volatile Snapshot current = new Snapshot(0);
+
+    private RegistryIdIndex() {
+    }
+
+    public static void invalidate() {
+        current = new Snapshot(current.generation + 1);
+    }
+
+    public static int generation() {
+        return current.generation;
+    }
+
+    public static BitSet itemTag(TagKey<Item> tag) {
+        return current.itemTags.computeIfAbsent(tag, t -> fromTag(BuiltInRegistries.ITEM, t));
+    }
+
+    public static BitSet fluidTag(TagKey<Fluid> tag) {
+        return current.fluidTags.computeIfAbsent(tag, t -> fromTag(BuiltInRegistries.FLUID, t));
+    }
+
+    // Returns a fresh set the caller owns
+    public static BitSet itemNamespaces(Collection<String> namespaces) {
+        BitSet ids = new BitSet();
+        for (String namespace : namespaces) {
+            ids.or(current.itemNamespaces.computeIfAbsent(namespace, n -> fromNamespace(BuiltInRegistries.ITEM, n)));
+        }
+        return ids;
+    }
+
+    public static BitSet fluidNamespaces(Collection<String> namespaces) {
+        BitSet ids = new BitSet();
+        for (String namespace : namespaces) {
+            ids.or(current.fluidNamespaces.computeIfAbsent(namespace,
+                    n -> fromNamespace(BuiltInRegistries.FLUID, n)));
+        }
+        return ids;
+    }
+
+    public static boolean isBlacklisted(Item item) {
+        return contains(itemTag(ModTags.RESOURCE_BLACKLIST_ITEMS), id(item));
+    }
+
+    public static boolean isBlacklisted(Fluid fluid) {
+        return contains(fluidTag(ModTags.RESOURCE_BLACKLIST_FLUIDS), id(fluid));
+    }
+
+    public static int id(Item item) {
+        return BuiltInRegistries.ITEM.getId(item);
+    }
+
+    public static int id(Fluid fluid) {
+        return BuiltInRegistries.FLUID.getId(fluid);
+    }
+
+    public static boolean contains(BitSet ids, int id) {
+        return id >= 0 && ids.get(id);
+    }
+
+    private static <T> BitSet fromTag(Registry<T> registry, TagKey<T> tag) {
+        BitSet ids = new BitSet();
+        for (Holder<T> holder : registry.getTagOrEmpty(tag)) {
+            int id = registry.getId(holder.value());
+            if (id >= 0) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    private static <T> BitSet fromNamespace(Registry<T> registry, String namespace) {
+        BitSet ids = new BitSet();
+        for (Map.Entry<ResourceKey<T>, T> entry : registry.entrySet()) {
+            if (entry.getKey().location().getNamespace().equals(namespace)) {
+                int id = registry.getId(entry.getValue());
+                if (id >= 0) {
+                    ids.set(id);
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -1,11 +1,13 @@
 package me.almana.logisticsnetworks.item;
 
 import me.almana.logisticsnetworks.data.NodeClipboardConfig;
+import me.almana.logisticsnetworks.data.NodeIndex;
 import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
 import me.almana.logisticsnetworks.registration.ModTags;
 import me.almana.logisticsnetworks.registration.Registration;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.sounds.SoundEvents;
 import net.minecraft.sounds.SoundSource;
@@ -16,9 +18,6 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.context.UseOnContext;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.phys.AABB;
-
-import java.util.List;
 
 public class LogisticsNodeItem extends Item {
 
@@ -66,13 +65,7 @@ public class LogisticsNodeItem extends Item {
     }
 
     private boolean hasNodeAttached(Level level, BlockPos pos) {
-        List<LogisticsNodeEntity> existingNodes = level.getEntitiesOfClass(LogisticsNodeEntity.class,
-                new AABB(pos).inflate(0.1));
-        for (LogisticsNodeEntity node : existingNodes) {
-            if (node.getAttachedPos().equals(pos))
-                return true;
-        }
-        return false;
+        return level instanceof ServerLevel serverLevel && NodeIndex.getAt(serverLevel, pos) != null;
     }
 
     private InteractionResult placeNode(Level level, BlockPos pos, UseOnContext context) {
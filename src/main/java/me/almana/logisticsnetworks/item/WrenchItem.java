@@ -2,6 +2,7 @@ package me.almana.logisticsnetworks.item;
 
 import me.almana.logisticsnetworks.data.NodeClipboardConfig;
 import me.almana.logisticsnetworks.data.NetworkRegistry;
+import me.almana.logisticsnetworks.data.NodeIndex;
 import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
 import me.almana.logisticsnetworks.menu.ClipboardMenu;
 import me.almana.logisticsnetworks.menu.NodeMenu;
@@ -33,7 +34,6 @@ import net.minecraft.world.item.TooltipFlag;
 import net.minecraft.world.item.component.CustomData;
 import net.minecraft.world.item.context.UseOnContext;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.phys.AABB;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
@@ -237,14 +237,10 @@ public class WrenchItem extends Item {
 
     @Nullable
     private LogisticsNodeEntity findNodeAt(Level level, BlockPos pos) {
-        List<LogisticsNodeEntity> nodes = level.getEntitiesOfClass(LogisticsNodeEntity.class,
-                new AABB(pos).inflate(0.5));
-        for (LogisticsNodeEntity node : nodes) {
-            if (node.getAttachedPos().equals(pos) && node.isActive()) {
-                return node;
-            }
-        }
-        return null;
+        if (!(level instanceof ServerLevel serverLevel))
+            return null;
+        LogisticsNodeEntity node = NodeIndex.getAt(serverLevel, pos);
+        return node != null && node.isActive() ? node : null;
     }
 
     private InteractionResult removeNode(Level level, LogisticsNodeEntity node, Player player) {
@@ -331,7 +327,8 @@ public class WrenchItem extends Item {
 
     private void markNodeNetworkDirty(LogisticsNodeEntity node) {
         if (node.getNetworkId() != null && node.level() instanceof ServerLevel serverLevel) {
-            NetworkRegistry.get(serverLevel).markNetworkDirty(node.getNetworkId());
+            NetworkRegistry.get(serverLevel).invalidateTopology(node.getNetworkId(), node.getUUID(),
+                    LogisticsNodeEntity.ALL_CHANNELS_MASK);
         }
     }
 
@@ -0,0 +1,42 @@
+package me.almana.logisticsnetworks.logic;
+
+import me.almana.logisticsnetworks.data.NodeIndex;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+// Queues export channels for the game tick they next become eligible, so idle networks cost nothing per tick
+public final class ChannelWakeScheduler {
+
+    private record Wake(UUID nodeId, int channelIndex, long dueTick) {
+    }
+
+    private final TimingWheel<Wake> wheel;
+
+    public ChannelWakeScheduler(long gameTime) {
+        this.wheel = new TimingWheel<>(gameTime);
+    }
+
+    public void schedule(LogisticsNodeEntity node, int channelIndex, long dueTick) {
+        if (node.getScheduledWake(channelIndex) == dueTick)
+            return;
+        // Any earlier wake for this channel goes stale and is dropped when it fires
+        node.setScheduledWake(channelIndex, dueTick);
+        wheel.schedule(new Wake(node.getUUID(), channelIndex, dueTick), dueTick);
+    }
+
+    public void advance(long gameTime, ObjIntConsumer<LogisticsNodeEntity> sink) {
+        wheel.advance(gameTime, wake -> {
+            LogisticsNodeEntity node = NodeIndex.get(wake.nodeId());
+            if (node == null || node.getScheduledWake(wake.channelIndex()) != wake.dueTick())
+                return;
+            node.setScheduledWake(wake.channelIndex(), -1L);
+            sink.accept(node, wake.channelIndex());
+        });
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+}
@@ -0,0 +1,127 @@
+package me.almana.logisticsnetworks.logic;
+
+import net.neoforged.neoforge.energy.IEnergyStorage;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+// Energy exports of one network pass, solved together instead of exporter by exporter.
+// Each source and sink is simulated once, flows follow every exporter's own target order,
+// then each sink is received into once and each source extracted from once for what was accepted.
+final class EnergyFlowSolver<T> {
+
+    private static final class Sink {
+        private final IEnergyStorage handler;
+        // Simulated accept, -1 until first needed
+        private int capacity = -1;
+        private int assigned;
+        private final List<Flow> flows = new ArrayList<>();
+
+        private Sink(IEnergyStorage handler) {
+            this.handler = handler;
+        }
+    }
+
+    private static final class Source<T> {
+        private final T exporter;
+        private final IEnergyStorage handler;
+        private final int limit;
+        private final List<Sink> sinks;
+        private final List<Flow> flows = new ArrayList<>();
+        private int moved;
+
+        private Source(T exporter, IEnergyStorage handler, int limit, List<Sink> sinks) {
+            this.exporter = exporter;
+            this.handler = handler;
+            this.limit = limit;
+            this.sinks = sinks;
+        }
+    }
+
+    private static final class Flow {
+        private int amount;
+
+        private Flow(int amount) {
+            this.amount = amount;
+        }
+    }
+
+    // Keyed by handler identity, so importers shared by several exporters are asked once
+    private final Map<IEnergyStorage, Sink> sinks = new IdentityHashMap<>();
+    private final List<Source<T>> sources = new ArrayList<>();
+
+    // Targets in the order the exporter's distribution mode wants them filled
+    void add(T exporter, IEnergyStorage source, int limit, List<IEnergyStorage> targets) {
+        List<Sink> targetSinks = new ArrayList<>(targets.size());
+        for (IEnergyStorage target : targets) {
+            targetSinks.add(sinks.computeIfAbsent(target, Sink::new));
+        }
+        sources.add(new Source<>(exporter, source, limit, targetSinks));
+    }
+
+    void solve(ObjIntConsumer<T> results) {
+        if (sources.isEmpty())
+            return;
+
+        int[] supply = new int[sources.size()];
+        long totalSupply = 0;
+        for (int i = 0; i < supply.length; i++) {
+            Source<T> source = sources.get(i);
+            supply[i] = Math.max(0, source.handler.extractEnergy(source.limit, true));
+            totalSupply += supply[i];
+        }
+        int demandBound = (int) Math.min(Integer.MAX_VALUE, totalSupply);
+
+        // Earlier exporters fill their targets first, as they did when each ran on its own
+        for (int i = 0; i < supply.length && demandBound > 0; i++) {
+            Source<T> source = sources.get(i);
+            int remaining = supply[i];
+            for (Sink sink : source.sinks) {
+                if (remaining <= 0)
+                    break;
+                // A handler feeding itself would report moved energy without moving any
+                if (sink.handler == source.handler)
+                    continue;
+                if (sink.capacity < 0) {
+                    sink.capacity = Math.max(0, sink.handler.receiveEnergy(demandBound, true));
+                }
+                int amount = Math.min(remaining, sink.capacity - sink.assigned);
+                if (amount <= 0)
+                    continue;
+                Flow flow = new Flow(amount);
+                source.flows.add(flow);
+                sink.flows.add(flow);
+                sink.assigned += amount;
+                remaining -= amount;
+            }
+        }
+
+        // Sinks receive first and trim what they refuse from their last flows, nothing has left a source yet
+        for (Sink sink : sinks.values()) {
+            if (sink.assigned <= 0)
+                continue;
+            int rejected = sink.assigned - Math.max(0, sink.handler.receiveEnergy(sink.assigned, false));
+            for (int f = sink.flows.size() - 1; f >= 0 && rejected > 0; f--) {
+                Flow flow = sink.flows.get(f);
+                int cut = Math.min(flow.amount, rejected);
+                flow.amount -= cut;
+                rejected -= cut;
+            }
+        }
+
+        // Each source then gives exactly what its sinks accepted
+        for (Source<T> source : sources) {
+            int accepted = 0;
+            for (Flow flow : source.flows) {
+                accepted += flow.amount;
+            }
+            if (accepted > 0) {
+                source.moved = Math.max(0, source.handler.extractEnergy(accepted, false));
+            }
+        }
+
+        for (Source<T> source : sources) {
+            results.accept(source.exporter, source.moved);
+        }
+    }
+}
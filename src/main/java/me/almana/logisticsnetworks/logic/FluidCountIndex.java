@@ -0,0 +1,43 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
+import net.neoforged.neoforge.fluids.FluidStack;
+import net.neoforged.neoforge.fluids.FluidStackLinkedSet;
+import net.neoforged.neoforge.fluids.capability.IFluidHandler;
+
+// Fluid totals of one handler side, kept across ticks for amount filters like ItemCountIndex.
+// Tanks are few, so a hash over all of them decides whether to recount.
+// The engine's own drains and fills are layered on top until the next sync.
+final class FluidCountIndex {
+
+    private final Object2IntOpenCustomHashMap<FluidStack> totals = new Object2IntOpenCustomHashMap<>(
+            FluidStackLinkedSet.TYPE_AND_COMPONENTS);
+    private final Object2IntOpenCustomHashMap<FluidStack> moved = new Object2IntOpenCustomHashMap<>(
+            FluidStackLinkedSet.TYPE_AND_COMPONENTS);
+    private long fingerprint = InventoryFingerprint.NONE;
+
+    void sync(IFluidHandler handler) {
+        moved.clear();
+        long current = InventoryFingerprint.of(handler);
+        if (current == fingerprint)
+            return;
+        fingerprint = current;
+
+        totals.clear();
+        for (int tank = 0; tank < handler.getTanks(); tank++) {
+            FluidStack stack = handler.getFluidInTank(tank);
+            if (!stack.isEmpty()) {
+                totals.addTo(stack.copyWithAmount(1), stack.getAmount());
+            }
+        }
+    }
+
+    // Moves the engine made itself since the last sync, negative for drains
+    void onMoved(FluidStack fluid, int delta) {
+        moved.addTo(fluid.copyWithAmount(1), delta);
+    }
+
+    int get(FluidStack fluid) {
+        return Math.max(0, totals.getInt(fluid) + moved.getInt(fluid));
+    }
+}
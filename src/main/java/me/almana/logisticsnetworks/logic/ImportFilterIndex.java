@@ -0,0 +1,78 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import me.almana.logisticsnetworks.filter.CompiledFilter;
+import me.almana.logisticsnetworks.filter.RegistryIdIndex;
+import me.almana.logisticsnetworks.logic.NetworkTopology.ImportTarget;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.world.item.Item;
+
+import java.util.BitSet;
+import java.util.List;
+
+// Inverted view of one item channel's import filters: item registry id -> importers that accept it.
+// Importers are numbered by their position in the channel's import table.
+// Filters with NBT or durability rules cannot be decided by id and land in the component bucket.
+final class ImportFilterIndex {
+
+    private final int generation;
+    // Whitelist filters, listed under every id they accept
+    private final Int2ObjectMap<BitSet> acceptingById = new Int2ObjectOpenHashMap<>();
+    // Filters accepting everything except their blacklisted ids
+    private final BitSet acceptingAll = new BitSet();
+    private final Int2ObjectMap<BitSet> rejectingById = new Int2ObjectOpenHashMap<>();
+    private final BitSet componentDependent = new BitSet();
+
+    private ImportFilterIndex(int generation) {
+        this.generation = generation;
+    }
+
+    static ImportFilterIndex build(List<ImportTarget> imports, HolderLookup.Provider provider) {
+        ImportFilterIndex index = new ImportFilterIndex(RegistryIdIndex.generation());
+        for (int importIndex = 0; importIndex < imports.size(); importIndex++) {
+            CompiledFilter filter = imports.get(importIndex).channel().getCompiledFilter(provider);
+            CompiledFilter.ItemIdAcceptance acceptance = filter.getItemIdAcceptance();
+            if (acceptance == null) {
+                index.componentDependent.set(importIndex);
+                continue;
+            }
+            Int2ObjectMap<BitSet> byId;
+            if (acceptance.inverted()) {
+                index.acceptingAll.set(importIndex);
+                byId = index.rejectingById;
+            } else {
+                byId = index.acceptingById;
+            }
+            BitSet ids = acceptance.ids();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                byId.computeIfAbsent(id, k -> new BitSet()).set(importIndex);
+            }
+        }
+        return index;
+    }
+
+    boolean isStale() {
+        return generation != RegistryIdIndex.generation();
+    }
+
+    // Importers that accept the item whatever its components
+    BitSet getAccepting(Item item) {
+        int id = RegistryIdIndex.id(item);
+        BitSet accepting = (BitSet) acceptingAll.clone();
+        BitSet rejecting = rejectingById.get(id);
+        if (rejecting != null) {
+            accepting.andNot(rejecting);
+        }
+        BitSet listed = acceptingById.get(id);
+        if (listed != null) {
+            accepting.or(listed);
+        }
+        return accepting;
+    }
+
+    // Importers that have to run their filter against the actual stack
+    BitSet getComponentDependent() {
+        return componentDependent;
+    }
+}
@@ -0,0 +1,51 @@
+package me.almana.logisticsnetworks.logic;
+
+import net.minecraft.world.item.ItemStack;
+import net.neoforged.neoforge.fluids.FluidStack;
+import net.neoforged.neoforge.fluids.capability.IFluidHandler;
+import net.neoforged.neoforge.items.IItemHandler;
+
+// Cheap change detector for item handlers, hashed from item, components and count per slot.
+// Handlers above SAMPLE_SLOTS are sampled at a fixed stride. Handler state outside the stacks is not covered,
+// so callers only trust a fingerprint for a bounded time.
+final class InventoryFingerprint {
+
+    static final long NONE = 0L;
+    private static final int SAMPLE_SLOTS = 256;
+
+    private InventoryFingerprint() {
+    }
+
+    // Every slot is hashed, so any change to the stacks shows
+    static boolean isExact(IItemHandler handler) {
+        return handler.getSlots() <= SAMPLE_SLOTS;
+    }
+
+    static long of(IItemHandler handler) {
+        int slotCount = handler.getSlots();
+        int stride = slotCount <= SAMPLE_SLOTS ? 1 : (slotCount + SAMPLE_SLOTS - 1) / SAMPLE_SLOTS;
+        long hash = mix(System.identityHashCode(handler), slotCount);
+        for (int slot = 0; slot < slotCount; slot += stride) {
+            ItemStack stack = handler.getStackInSlot(slot);
+            hash = mix(hash, stack.isEmpty() ? 0 : ItemStack.hashItemAndComponents(stack) * 31L + stack.getCount());
+        }
+        return hash;
+    }
+
+    static long of(IFluidHandler handler) {
+        int tankCount = handler.getTanks();
+        long hash = mix(System.identityHashCode(handler), tankCount);
+        for (int tank = 0; tank < tankCount; tank++) {
+            FluidStack stack = handler.getFluidInTank(tank);
+            hash = mix(hash, stack.isEmpty() ? 0 : FluidStack.hashFluidAndComponents(stack) * 31L + stack.getAmount());
+        }
+        return hash;
+    }
+
+    static long mix(long hash, long value) {
+        long mixed = (hash * 31 + value) * 0x9E3779B97F4A7C15L;
+        mixed ^= mixed >>> 29;
+        // NONE is reserved for "no fingerprint recorded"
+        return mixed == NONE ? 1L : mixed;
+    }
+}
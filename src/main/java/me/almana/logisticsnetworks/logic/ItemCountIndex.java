@@ -0,0 +1,54 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.neoforged.neoforge.items.IItemHandler;
+
+// Item totals of one handler side, kept across ticks for amount filters.
+// The item and count last seen per slot act as the fingerprint: sync() only touches totals for slots that differ,
+// so an unchanged inventory costs a read per slot and no hashing.
+// The engine's own moves are layered on top until the next sync reads them from the slots.
+final class ItemCountIndex {
+
+    private Item[] items = new Item[0];
+    private int[] counts = new int[0];
+    private final Object2IntOpenHashMap<Item> totals = new Object2IntOpenHashMap<>();
+    private final Object2IntOpenHashMap<Item> moved = new Object2IntOpenHashMap<>();
+
+    void sync(IItemHandler handler) {
+        moved.clear();
+        int slotCount = handler.getSlots();
+        if (slotCount != items.length) {
+            items = new Item[slotCount];
+            counts = new int[slotCount];
+            totals.clear();
+        }
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            ItemStack stack = handler.getStackInSlot(slot);
+            Item item = stack.isEmpty() ? null : stack.getItem();
+            int count = stack.isEmpty() ? 0 : stack.getCount();
+            if (item == items[slot] && count == counts[slot])
+                continue;
+
+            if (items[slot] != null && totals.addTo(items[slot], -counts[slot]) <= counts[slot]) {
+                totals.removeInt(items[slot]);
+            }
+            if (item != null) {
+                totals.addTo(item, count);
+            }
+            items[slot] = item;
+            counts[slot] = count;
+        }
+    }
+
+    // Moves the engine made itself since the last sync, negative for extractions
+    void onMoved(Item item, int delta) {
+        moved.addTo(item, delta);
+    }
+
+    int get(Item item) {
+        return Math.max(0, totals.getInt(item) + moved.getInt(item));
+    }
+}
@@ -0,0 +1,263 @@
+package me.almana.logisticsnetworks.logic;
+
+import com.mojang.logging.LogUtils;
+import me.almana.logisticsnetworks.Config;
+import me.almana.logisticsnetworks.data.ChannelData;
+import me.almana.logisticsnetworks.data.ChannelMode;
+import me.almana.logisticsnetworks.data.ChannelType;
+import me.almana.logisticsnetworks.data.LogisticsNetwork;
+import me.almana.logisticsnetworks.data.NodeIndex;
+import me.almana.logisticsnetworks.data.RedstoneMode;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import me.almana.logisticsnetworks.filter.CompiledFilter;
+import me.almana.logisticsnetworks.filter.RegistryIdIndex;
+import me.almana.logisticsnetworks.upgrade.NodeUpgradeData;
+import net.minecraft.core.HolderLookup;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.*;
+
+// Compiled view of a network, rebuilt only when membership, loaded nodes, channels or upgrades change
+public final class NetworkTopology {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    record ImportTarget(LogisticsNodeEntity node, ChannelData channel, int channelIndex) {
+    }
+
+    // Import targets of one export channel, already ordered for its distribution mode
+    // importIndexes maps each route position to the target's place in the channel's import table
+    record ExportRoute(List<ImportTarget> targets, boolean hasConditionalTargets,
+            Map<ImportTarget, Integer> positions, int[] importIndexes, RouteAffinity affinity) {
+
+        int positionOf(ImportTarget target) {
+            return positions.getOrDefault(target, -1);
+        }
+    }
+
+    private final List<LogisticsNodeEntity> nodes;
+    private final Map<UUID, LogisticsNodeEntity> nodesById;
+    private final Map<UUID, Integer> tiers;
+    private final Map<UUID, Boolean> dimensional;
+    private final Map<Integer, List<ImportTarget>> itemImports = new HashMap<>();
+    private final Map<Integer, List<ImportTarget>> fluidImports = new HashMap<>();
+    private final Map<Integer, List<ImportTarget>> energyImports = new HashMap<>();
+    private final Map<UUID, ExportRoute[]> exportRoutes = new HashMap<>();
+    // Pruned routes hold filter verdicts resolved against this RegistryIdIndex generation
+    private final int generation = RegistryIdIndex.generation();
+    // Built on first use per item channel, filters need a registry lookup to compile
+    private final ImportFilterIndex[] itemFilterIndexes = new ImportFilterIndex[LogisticsNodeEntity.CHANNEL_COUNT];
+    // Importer node -> (exporter node -> channel bitmask) of the routes that deliver into it
+    private final Map<UUID, Map<UUID, Integer>> feedersByImporter = new HashMap<>();
+    // Lives as long as the compiled view, so route or filter changes start it empty
+    private final TargetSaturation saturation = new TargetSaturation();
+
+    private NetworkTopology(List<LogisticsNodeEntity> nodes) {
+        this.nodes = nodes;
+        this.nodesById = new HashMap<>(nodes.size());
+        this.tiers = new HashMap<>(nodes.size());
+        this.dimensional = new HashMap<>(nodes.size());
+    }
+
+    public static NetworkTopology compile(LogisticsNetwork network) {
+        // Only the loaded subset is resolved, members in unloaded chunks rejoin through chunk and entity events
+        Set<UUID> members = network.getNodeUuids();
+        List<UUID> sortedUuids = new ArrayList<>();
+        for (UUID nodeId : NodeIndex.getLoadedNodes(network.getId())) {
+            if (members.contains(nodeId)) {
+                sortedUuids.add(nodeId);
+            }
+        }
+        // Deterministic order
+        sortedUuids.sort(Comparator.comparingLong(UUID::getMostSignificantBits)
+                .thenComparingLong(UUID::getLeastSignificantBits));
+
+        List<LogisticsNodeEntity> resolved = new ArrayList<>(sortedUuids.size());
+        for (UUID nodeId : sortedUuids) {
+            LogisticsNodeEntity node = NodeIndex.get(nodeId);
+            if (node != null && node.isValidNode() && node.level().isLoaded(node.getAttachedPos())) {
+                resolved.add(node);
+            }
+        }
+        if (Config.debugMode && resolved.size() < members.size()) {
+            LOGGER.debug("Network {}: {} of {} nodes unloaded, skipping.", network.getId(),
+                    members.size() - resolved.size(), members.size());
+        }
+
+        NetworkTopology topology = new NetworkTopology(Collections.unmodifiableList(resolved));
+        for (LogisticsNodeEntity node : resolved) {
+            topology.nodesById.put(node.getUUID(), node);
+            topology.tiers.put(node.getUUID(), NodeUpgradeData.getUpgradeTier(node));
+            topology.dimensional.put(node.getUUID(), NodeUpgradeData.hasDimensionalUpgrade(node));
+        }
+        topology.populateImportTables();
+        topology.populateExportRoutes();
+        return topology;
+    }
+
+    private void populateImportTables() {
+        for (LogisticsNodeEntity node : nodes) {
+            for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
+                ChannelData ch = node.getChannel(i);
+                if (ch == null || !ch.isEnabled() || ch.getMode() != ChannelMode.IMPORT)
+                    continue;
+                Map<Integer, List<ImportTarget>> table = switch (ch.getType()) {
+                    case FLUID -> fluidImports;
+                    case ENERGY -> energyImports;
+                    default -> itemImports;
+                };
+                table.computeIfAbsent(i, k -> new ArrayList<>()).add(new ImportTarget(node, ch, i));
+            }
+        }
+    }
+
+    private void populateExportRoutes() {
+        for (LogisticsNodeEntity node : nodes) {
+            ExportRoute[] routes = null;
+            for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
+                ChannelData ch = node.getChannel(i);
+                if (ch == null || !ch.isEnabled() || ch.getMode() != ChannelMode.EXPORT)
+                    continue;
+                List<ImportTarget> imports = getImports(ch, i);
+                List<ImportTarget> candidates = ch.getType() == ChannelType.ITEM ? pruneDisjoint(imports, ch, node)
+                        : imports;
+                if (candidates.isEmpty())
+                    continue;
+
+                List<ImportTarget> ordered = orderTargets(new ArrayList<>(candidates), ch, node);
+                boolean conditional = false;
+                for (ImportTarget target : ordered) {
+                    if (target.channel().getRedstoneMode() != RedstoneMode.ALWAYS_ON) {
+                        conditional = true;
+                        break;
+                    }
+                }
+
+                if (routes == null)
+                    routes = new ExportRoute[LogisticsNodeEntity.CHANNEL_COUNT];
+                Map<ImportTarget, Integer> positions = new IdentityHashMap<>(ordered.size());
+                for (int pos = 0; pos < ordered.size(); pos++) {
+                    positions.put(ordered.get(pos), pos);
+                }
+                int[] importIndexes = new int[ordered.size()];
+                for (int importIndex = 0; importIndex < imports.size(); importIndex++) {
+                    Integer pos = positions.get(imports.get(importIndex));
+                    if (pos != null) {
+                        importIndexes[pos] = importIndex;
+                    }
+                }
+                routes[i] = new ExportRoute(Collections.unmodifiableList(ordered), conditional, positions,
+                        importIndexes, new RouteAffinity());
+
+                for (ImportTarget target : ordered) {
+                    feedersByImporter.computeIfAbsent(target.node().getUUID(), k -> new HashMap<>())
+                            .merge(node.getUUID(), 1 << i, (a, b) -> a | b);
+                }
+            }
+            if (routes != null) {
+                exportRoutes.put(node.getUUID(), routes);
+            }
+        }
+    }
+
+    // Drops importers whose filter accepts none of the item ids the exporter's filter lets out.
+    // Filters with NBT or durability rules are never pruned.
+    private static List<ImportTarget> pruneDisjoint(List<ImportTarget> imports, ChannelData exportChannel,
+            LogisticsNodeEntity exporter) {
+        HolderLookup.Provider provider = exporter.level().registryAccess();
+        CompiledFilter.ItemIdAcceptance exported = exportChannel.getCompiledFilter(provider).getItemIdAcceptance();
+        if (exported == null)
+            return imports;
+
+        List<ImportTarget> kept = new ArrayList<>(imports.size());
+        for (ImportTarget target : imports) {
+            CompiledFilter.ItemIdAcceptance imported = target.channel().getCompiledFilter(provider)
+                    .getItemIdAcceptance();
+            if (imported == null || exported.intersects(imported)) {
+                kept.add(target);
+            } else if (Config.debugMode) {
+                LOGGER.debug("Pruned disjoint route {} -> {} on channel {}", exporter.getUUID(),
+                        target.node().getUUID(), target.channelIndex());
+            }
+        }
+        return kept;
+    }
+
+    private static List<ImportTarget> orderTargets(List<ImportTarget> targets, ChannelData channel,
+            LogisticsNodeEntity sourceNode) {
+        if (targets.size() <= 1)
+            return targets;
+
+        double sx = sourceNode.getX(), sy = sourceNode.getY(), sz = sourceNode.getZ();
+        switch (channel.getDistributionMode()) {
+            case PRIORITY -> targets.sort((a, b) -> Integer.compare(b.channel.getPriority(), a.channel.getPriority()));
+            case NEAREST_FIRST -> targets.sort(Comparator.comparingDouble(t -> t.node.distanceToSqr(sx, sy, sz)));
+            case FARTHEST_FIRST -> targets.sort(
+                    (a, b) -> Double.compare(b.node.distanceToSqr(sx, sy, sz), a.node.distanceToSqr(sx, sy, sz)));
+            default -> {
+            }
+        }
+        return targets;
+    }
+
+    private List<ImportTarget> getImports(ChannelData exportChannel, int channelIndex) {
+        List<ImportTarget> imports = switch (exportChannel.getType()) {
+            case FLUID -> fluidImports.get(channelIndex);
+            case ENERGY -> energyImports.get(channelIndex);
+            default -> itemImports.get(channelIndex);
+        };
+        return imports == null ? List.of() : imports;
+    }
+
+    public List<LogisticsNodeEntity> getNodes() {
+        return nodes;
+    }
+
+    @Nullable
+    public LogisticsNodeEntity getNode(UUID nodeId) {
+        return nodesById.get(nodeId);
+    }
+
+    public boolean isStale() {
+        return generation != RegistryIdIndex.generation();
+    }
+
+    public boolean hasExporters() {
+        return !exportRoutes.isEmpty();
+    }
+
+    public Set<UUID> getExporters() {
+        return exportRoutes.keySet();
+    }
+
+    public Map<UUID, Integer> getFeeders(UUID importerId) {
+        return feedersByImporter.getOrDefault(importerId, Map.of());
+    }
+
+    public int getTier(UUID nodeId) {
+        return tiers.getOrDefault(nodeId, 0);
+    }
+
+    public boolean isDimensional(UUID nodeId) {
+        return dimensional.getOrDefault(nodeId, false);
+    }
+
+    ImportFilterIndex getItemFilterIndex(int channelIndex, HolderLookup.Provider provider) {
+        ImportFilterIndex index = itemFilterIndexes[channelIndex];
+        if (index == null || index.isStale()) {
+            index = ImportFilterIndex.build(itemImports.getOrDefault(channelIndex, List.of()), provider);
+            itemFilterIndexes[channelIndex] = index;
+        }
+        return index;
+    }
+
+    TargetSaturation getSaturation() {
+        return saturation;
+    }
+
+    ExportRoute getExportRoute(UUID nodeId, int channelIndex) {
+        ExportRoute[] routes = exportRoutes.get(nodeId);
+        return routes == null ? null : routes[channelIndex];
+    }
+}
@@ -0,0 +1,112 @@
+package me.almana.logisticsnetworks.logic;
+
+import me.almana.logisticsnetworks.data.NetworkRegistry;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.neoforged.neoforge.capabilities.BlockCapability;
+import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
+import net.neoforged.neoforge.capabilities.Capabilities;
+import net.neoforged.neoforge.energy.IEnergyStorage;
+import net.neoforged.neoforge.fluids.capability.IFluidHandler;
+import net.neoforged.neoforge.items.IItemHandler;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+// Capability caches for a node's attached block, one per capability and io side.
+// NeoForge invalidates them on block or chunk changes, which re-runs the node's channels.
+public final class NodeCapabilityCache {
+
+    // Last slot holds the unsided lookup
+    private static final int SIDES = Direction.values().length + 1;
+
+    private final LogisticsNodeEntity node;
+    @SuppressWarnings("unchecked")
+    private final BlockCapabilityCache<IItemHandler, Direction>[] items = new BlockCapabilityCache[SIDES];
+    @SuppressWarnings("unchecked")
+    private final BlockCapabilityCache<IFluidHandler, Direction>[] fluids = new BlockCapabilityCache[SIDES];
+    @SuppressWarnings("unchecked")
+    private final BlockCapabilityCache<IEnergyStorage, Direction>[] energy = new BlockCapabilityCache[SIDES];
+    private final ItemCountIndex[] itemCounts = new ItemCountIndex[SIDES];
+    private final FluidCountIndex[] fluidCounts = new FluidCountIndex[SIDES];
+    @Nullable
+    private ServerLevel cachedLevel;
+    @Nullable
+    private BlockPos cachedPos;
+
+    public NodeCapabilityCache(LogisticsNodeEntity node) {
+        this.node = node;
+    }
+
+    @Nullable
+    public IItemHandler getItemHandler(ServerLevel level, @Nullable Direction side) {
+        return get(items, Capabilities.ItemHandler.BLOCK, level, side);
+    }
+
+    @Nullable
+    public IFluidHandler getFluidHandler(ServerLevel level, @Nullable Direction side) {
+        return get(fluids, Capabilities.FluidHandler.BLOCK, level, side);
+    }
+
+    @Nullable
+    public IEnergyStorage getEnergyStorage(ServerLevel level, @Nullable Direction side) {
+        return get(energy, Capabilities.EnergyStorage.BLOCK, level, side);
+    }
+
+    // Lives as long as the side's item capability, the caller syncs it before reading
+    ItemCountIndex getItemCountIndex(@Nullable Direction side) {
+        int index = side == null ? SIDES - 1 : side.ordinal();
+        if (itemCounts[index] == null) {
+            itemCounts[index] = new ItemCountIndex();
+        }
+        return itemCounts[index];
+    }
+
+    FluidCountIndex getFluidCountIndex(@Nullable Direction side) {
+        int index = side == null ? SIDES - 1 : side.ordinal();
+        if (fluidCounts[index] == null) {
+            fluidCounts[index] = new FluidCountIndex();
+        }
+        return fluidCounts[index];
+    }
+
+    @Nullable
+    private <T> T get(BlockCapabilityCache<T, Direction>[] caches, BlockCapability<T, Direction> capability,
+            ServerLevel level, @Nullable Direction side) {
+        BlockPos pos = node.getAttachedPos();
+        if (level != cachedLevel || !pos.equals(cachedPos)) {
+            clear();
+            cachedLevel = level;
+            cachedPos = pos.immutable();
+        }
+
+        int index = side == null ? SIDES - 1 : side.ordinal();
+        BlockCapabilityCache<T, Direction> cache = caches[index];
+        if (cache == null) {
+            cache = BlockCapabilityCache.create(capability, level, cachedPos, side,
+                    () -> !node.isRemoved(), this::onInvalidated);
+            caches[index] = cache;
+        }
+        return cache.getCapability();
+    }
+
+    private void onInvalidated() {
+        Arrays.fill(itemCounts, null);
+        Arrays.fill(fluidCounts, null);
+        UUID networkId = node.getNetworkId();
+        if (networkId != null && node.level() instanceof ServerLevel level) {
+            NetworkRegistry.get(level).markNodeDirty(networkId, node.getUUID());
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(items, null);
+        Arrays.fill(fluids, null);
+        Arrays.fill(energy, null);
+        Arrays.fill(itemCounts, null);
+        Arrays.fill(fluidCounts, null);
+    }
+}
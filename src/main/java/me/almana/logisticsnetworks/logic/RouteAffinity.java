@@ -0,0 +1,43 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
+import me.almana.logisticsnetworks.filter.RegistryIdIndex;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.ItemStackLinkedSet;
+
+// Per export route: position of the first import target whose filter accepts an item.
+// Every target ahead of it is known to reject the item, so they are skipped without matching.
+// Filter verdicts change only with a topology rebuild, which replaces the route, or with a tag reload.
+final class RouteAffinity {
+
+    static final int UNKNOWN = -2;
+    // No target on the route accepts the item
+    static final int NONE = -1;
+
+    private final Object2IntMap<ItemStack> firstAccepting = new Object2IntOpenCustomHashMap<>(
+            ItemStackLinkedSet.TYPE_AND_TAG);
+    private int generation = RegistryIdIndex.generation();
+
+    RouteAffinity() {
+        firstAccepting.defaultReturnValue(UNKNOWN);
+    }
+
+    int get(ItemStack item) {
+        validate();
+        return firstAccepting.getInt(item);
+    }
+
+    void put(ItemStack item, int position) {
+        validate();
+        firstAccepting.put(item.copyWithCount(1), position);
+    }
+
+    private void validate() {
+        int current = RegistryIdIndex.generation();
+        if (generation != current) {
+            firstAccepting.clear();
+            generation = current;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenCustomHashMap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.ItemStackLinkedSet;
+import net.neoforged.neoforge.items.IItemHandler;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+// One pass summary of a source inventory, slots grouped by item and components.
+// Filters are evaluated once per group instead of once per slot. Shared by the export channels of a node
+// reading the same side, and refreshed slot by slot as items leave.
+final class SourceSlotIndex {
+
+    static final class Group {
+        private final int id;
+        private final ItemStack sample;
+        private final BitSet slots = new BitSet();
+        private int count;
+
+        private Group(int id, ItemStack sample) {
+            this.id = id;
+            this.sample = sample;
+        }
+
+        int id() {
+            return id;
+        }
+
+        // Count of one, never handed to a handler
+        ItemStack sample() {
+            return sample;
+        }
+
+        BitSet slots() {
+            return slots;
+        }
+
+        int count() {
+            return count;
+        }
+    }
+
+    private final IItemHandler handler;
+    private final List<Group> groups = new ArrayList<>();
+    private final Map<ItemStack, Group> byIdentity = new Object2ObjectOpenCustomHashMap<>(
+            ItemStackLinkedSet.TYPE_AND_TAG);
+    private final Group[] groupBySlot;
+    private final int[] slotCounts;
+
+    private SourceSlotIndex(IItemHandler handler, int slotCount) {
+        this.handler = handler;
+        this.groupBySlot = new Group[slotCount];
+        this.slotCounts = new int[slotCount];
+    }
+
+    // Covers every slot so counts match the whole inventory; slot filters are applied by the caller
+    static SourceSlotIndex build(IItemHandler handler) {
+        SourceSlotIndex index = new SourceSlotIndex(handler, handler.getSlots());
+        for (int slot = 0; slot < index.slotCounts.length; slot++) {
+            index.place(slot, handler.getStackInSlot(slot));
+        }
+        return index;
+    }
+
+    boolean isFor(IItemHandler handler) {
+        return this.handler == handler && handler.getSlots() == slotCounts.length;
+    }
+
+    // Re-reads one slot after items were moved out of or back into it
+    void refresh(int slot) {
+        if (slot < 0 || slot >= slotCounts.length)
+            return;
+        Group previous = groupBySlot[slot];
+        if (previous != null) {
+            previous.count -= slotCounts[slot];
+            previous.slots.clear(slot);
+            groupBySlot[slot] = null;
+            slotCounts[slot] = 0;
+        }
+        place(slot, handler.getStackInSlot(slot));
+    }
+
+    private void place(int slot, ItemStack stack) {
+        if (stack.isEmpty())
+            return;
+        Group group = byIdentity.get(stack);
+        if (group == null) {
+            group = new Group(groups.size(), stack.copyWithCount(1));
+            byIdentity.put(group.sample, group);
+            groups.add(group);
+        }
+        group.slots.set(slot);
+        group.count += stack.getCount();
+        groupBySlot[slot] = group;
+        slotCounts[slot] = stack.getCount();
+    }
+
+    List<Group> groups() {
+        return groups;
+    }
+
+    @Nullable
+    Group groupAt(int slot) {
+        return slot >= 0 && slot < groupBySlot.length ? groupBySlot[slot] : null;
+    }
+
+    Map<Item, Integer> countsByItem() {
+        Map<Item, Integer> counts = new HashMap<>();
+        for (Group group : groups) {
+            if (group.count > 0)
+                counts.merge(group.sample.getItem(), group.count, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,62 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenCustomHashMap;
+import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.ItemStackLinkedSet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Import channels found full for an item, shared by every exporter of the network.
+// Entries expire on their own and are dropped early when the importer is marked dirty.
+final class TargetSaturation {
+
+    private record Key(UUID nodeId, int channelIndex) {
+    }
+
+    private final Map<Key, Object2LongMap<ItemStack>> fullUntil = new HashMap<>();
+
+    boolean isSaturated(UUID nodeId, int channelIndex, ItemStack item, long gameTime) {
+        if (fullUntil.isEmpty())
+            return false;
+        Key key = new Key(nodeId, channelIndex);
+        Object2LongMap<ItemStack> items = fullUntil.get(key);
+        if (items == null)
+            return false;
+        long until = items.getLong(item);
+        if (gameTime < until)
+            return true;
+        if (until >= 0) {
+            items.removeLong(item);
+            if (items.isEmpty()) {
+                fullUntil.remove(key);
+            }
+        }
+        return false;
+    }
+
+    void markSaturated(UUID nodeId, int channelIndex, ItemStack item, long until) {
+        fullUntil.computeIfAbsent(new Key(nodeId, channelIndex), k -> {
+            Object2LongMap<ItemStack> items = new Object2LongOpenCustomHashMap<>(ItemStackLinkedSet.TYPE_AND_TAG);
+            items.defaultReturnValue(-1L);
+            return items;
+        }).put(item.copyWithCount(1), until);
+    }
+
+    void clear(UUID nodeId, int channelMask) {
+        if (fullUntil.isEmpty())
+            return;
+        for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
+            if ((channelMask & (1 << i)) != 0) {
+                fullUntil.remove(new Key(nodeId, i));
+            }
+        }
+    }
+
+    void clear() {
+        fullUntil.clear();
+    }
+}
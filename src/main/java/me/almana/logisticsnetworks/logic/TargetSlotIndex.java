@@ -0,0 +1,119 @@
+package me.almana.logisticsnetworks.logic;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenCustomHashMap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.ItemStackLinkedSet;
+import net.neoforged.neoforge.items.IItemHandler;
+import net.neoforged.neoforge.items.IItemHandlerModifiable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Map;
+
+// Free space of one import handler: slots holding each item and the empty slots.
+// Slots drop out as they fill, so repeated inserts only touch slots that can still take the stack.
+// Covers every slot; each insert applies its own channel's slot filter.
+final class TargetSlotIndex {
+
+    private final IItemHandler handler;
+    private final Map<ItemStack, BitSet> partialSlots = new Object2ObjectOpenCustomHashMap<>(
+            ItemStackLinkedSet.TYPE_AND_TAG);
+    private final BitSet emptySlots = new BitSet();
+
+    private TargetSlotIndex(IItemHandler handler) {
+        this.handler = handler;
+    }
+
+    static TargetSlotIndex build(IItemHandler handler) {
+        TargetSlotIndex index = new TargetSlotIndex(handler);
+
+        for (int slot = 0; slot < handler.getSlots(); slot++) {
+            ItemStack stack = handler.getStackInSlot(slot);
+            if (stack.isEmpty()) {
+                index.emptySlots.set(slot);
+            } else if (stack.getCount() < handler.getSlotLimit(slot)) {
+                index.partialSlots.computeIfAbsent(stack.copyWithCount(1), k -> new BitSet()).set(slot);
+            }
+        }
+        return index;
+    }
+
+    // Same order as ItemHandlerHelper.insertItemStacked: merge into matching stacks, then fill empty slots
+    ItemStack insert(ItemStack stack, @Nullable boolean[] allowedSlots) {
+        if (stack.isEmpty())
+            return ItemStack.EMPTY;
+        // Slot filtered modifiable handlers are written directly, bypassing insertItem
+        IItemHandlerModifiable strict = allowedSlots != null && handler instanceof IItemHandlerModifiable modifiable
+                ? modifiable
+                : null;
+
+        ItemStack remaining = stack;
+        BitSet partial = partialSlots.get(stack);
+        if (partial != null) {
+            for (int slot = partial.nextSetBit(0); slot >= 0 && !remaining.isEmpty(); slot = partial
+                    .nextSetBit(slot + 1)) {
+                if (!isAllowed(allowedSlots, slot))
+                    continue;
+                remaining = insertInto(strict, slot, remaining);
+                if (!remaining.isEmpty()) {
+                    // Took all it could, or refused the stack
+                    partial.clear(slot);
+                }
+            }
+        }
+
+        for (int slot = emptySlots.nextSetBit(0); slot >= 0 && !remaining.isEmpty(); slot = emptySlots
+                .nextSetBit(slot + 1)) {
+            if (!isAllowed(allowedSlots, slot))
+                continue;
+            int before = remaining.getCount();
+            ItemStack inserted = remaining;
+            remaining = insertInto(strict, slot, remaining);
+            if (remaining.getCount() >= before)
+                continue;
+            emptySlots.clear(slot);
+            if (remaining.isEmpty()) {
+                if (partial == null) {
+                    partial = new BitSet();
+                    partialSlots.put(inserted.copyWithCount(1), partial);
+                }
+                partial.set(slot);
+            }
+        }
+        return remaining;
+    }
+
+    private static boolean isAllowed(@Nullable boolean[] allowedSlots, int slot) {
+        return allowedSlots == null || slot < allowedSlots.length && allowedSlots[slot];
+    }
+
+    private ItemStack insertInto(@Nullable IItemHandlerModifiable strict, int slot, ItemStack stack) {
+        if (strict == null)
+            return handler.insertItem(slot, stack, false);
+
+        if (!strict.isItemValid(slot, stack))
+            return stack;
+        ItemStack slotStack = strict.getStackInSlot(slot);
+        boolean slotEmpty = slotStack.isEmpty();
+        if (!slotEmpty && !ItemStack.isSameItemSameComponents(slotStack, stack))
+            return stack;
+
+        int slotLimit = Math.min(strict.getSlotLimit(slot), stack.getMaxStackSize());
+        if (!slotEmpty) {
+            slotLimit = Math.min(slotLimit, slotStack.getMaxStackSize());
+        }
+        int currentCount = slotEmpty ? 0 : slotStack.getCount();
+        int toInsert = Math.min(slotLimit - currentCount, stack.getCount());
+        if (toInsert <= 0)
+            return stack;
+
+        if (slotEmpty) {
+            strict.setStackInSlot(slot, stack.copyWithCount(toInsert));
+        } else {
+            ItemStack updated = slotStack.copy();
+            updated.grow(toInsert);
+            strict.setStackInSlot(slot, updated);
+        }
+        return toInsert >= stack.getCount() ? ItemStack.EMPTY : stack.copyWithCount(stack.getCount() - toInsert);
+    }
+}
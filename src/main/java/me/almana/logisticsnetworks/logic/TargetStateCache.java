@@ -0,0 +1,82 @@
+package me.almana.logisticsnetworks.logic;
+
+import me.almana.logisticsnetworks.data.ChannelData;
+import net.minecraft.world.item.Item;
+import net.neoforged.neoforge.items.IItemHandler;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+// Import handler state shared by every exporter within one processNetwork call.
+// Inserts go through the shared slot index and counts, so later exporters see what earlier ones delivered.
+final class TargetStateCache {
+
+    static final class TargetState {
+        // Stands in for "no slot filter" so a null mask can be cached
+        private static final boolean[] ALL_SLOTS = new boolean[0];
+
+        private final IItemHandler handler;
+        private final ItemCountIndex countIndex;
+        private final Map<ChannelData, boolean[]> allowedSlots = new IdentityHashMap<>();
+        @Nullable
+        private TargetSlotIndex slotIndex;
+        private boolean countsSynced;
+
+        private TargetState(IItemHandler handler, ItemCountIndex countIndex) {
+            this.handler = handler;
+            this.countIndex = countIndex;
+        }
+
+        IItemHandler handler() {
+            return handler;
+        }
+
+        @Nullable
+        boolean[] getAllowedSlots(ChannelData channel, Supplier<boolean[]> builder) {
+            boolean[] mask = allowedSlots.get(channel);
+            if (mask == null) {
+                mask = builder.get();
+                allowedSlots.put(channel, mask == null ? ALL_SLOTS : mask);
+                return mask;
+            }
+            return mask == ALL_SLOTS ? null : mask;
+        }
+
+        TargetSlotIndex getSlotIndex() {
+            if (slotIndex == null) {
+                slotIndex = TargetSlotIndex.build(handler);
+            }
+            return slotIndex;
+        }
+
+        int getItemCount(Item item) {
+            if (!countsSynced) {
+                countIndex.sync(handler);
+                countsSynced = true;
+            }
+            return countIndex.get(item);
+        }
+
+        // Every insert reports here, layered on the synced counts for the rest of the pass
+        void onInserted(Item item, int count) {
+            countIndex.onMoved(item, count);
+        }
+    }
+
+    private final Map<IItemHandler, TargetState> states = new IdentityHashMap<>();
+
+    TargetState get(IItemHandler handler, ItemCountIndex countIndex) {
+        TargetState state = states.get(handler);
+        if (state == null) {
+            state = new TargetState(handler, countIndex);
+            states.put(handler, state);
+        }
+        return state;
+    }
+
+    // A handler that was also drained as a source no longer matches its cached state
+    void invalidate(IItemHandler handler) {
+        states.remove(handler);
+    }
+}
@@ -0,0 +1,138 @@
+package me.almana.logisticsnetworks.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel keyed on game tick. Four levels of 64 slots cover ~16.7M ticks,
+// anything further out waits in an overflow list until the top level wraps.
+public final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long HORIZON = 1L << (SLOT_BITS * LEVELS);
+
+    private record Entry<T>(T value, long dueTick) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private final List<Entry<T>>[][] wheels = new List[LEVELS][SLOTS];
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    public void schedule(T value, long dueTick) {
+        place(new Entry<>(value, dueTick), currentTick + 1);
+        size++;
+    }
+
+    // Fires every entry due at or before now, in tick order
+    public void advance(long now, Consumer<T> sink) {
+        if (now <= currentTick)
+            return;
+
+        if (now - currentTick >= HORIZON) {
+            // Too far to step through, flush and re-bucket everything
+            List<Entry<T>> all = drainAll();
+            currentTick = now;
+            for (Entry<T> entry : all) {
+                if (entry.dueTick() <= now) {
+                    size--;
+                    sink.accept(entry.value());
+                } else {
+                    place(entry, now + 1);
+                }
+            }
+            return;
+        }
+
+        while (currentTick < now) {
+            if (size == 0) {
+                currentTick = now;
+                return;
+            }
+            currentTick++;
+            cascade(currentTick);
+
+            List<Entry<T>> slot = wheels[0][(int) (currentTick & SLOT_MASK)];
+            if (slot == null || slot.isEmpty())
+                continue;
+            wheels[0][(int) (currentTick & SLOT_MASK)] = null;
+            size -= slot.size();
+            for (Entry<T> entry : slot) {
+                sink.accept(entry.value());
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    private void cascade(long tick) {
+        if ((tick & (HORIZON - 1)) == 0 && !overflow.isEmpty()) {
+            List<Entry<T>> pending = new ArrayList<>(overflow);
+            overflow.clear();
+            for (Entry<T> entry : pending) {
+                place(entry, tick);
+            }
+        }
+        // Highest level first so entries can fall all the way down in one tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+            long lowBits = (1L << (SLOT_BITS * level)) - 1;
+            if ((tick & lowBits) != 0)
+                continue;
+            int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            List<Entry<T>> slot = wheels[level][index];
+            if (slot == null)
+                continue;
+            wheels[level][index] = null;
+            for (Entry<T> entry : slot) {
+                place(entry, tick);
+            }
+        }
+    }
+
+    private void place(Entry<T> entry, long earliestTick) {
+        // Overdue entries fire on the earliest tick still to be processed
+        long due = Math.max(entry.dueTick(), earliestTick);
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((due >>> shift) == (currentTick >>> shift)) {
+                int index = (int) ((due >>> (SLOT_BITS * level)) & SLOT_MASK);
+                List<Entry<T>> slot = wheels[level][index];
+                if (slot == null) {
+                    slot = new ArrayList<>();
+                    wheels[level][index] = slot;
+                }
+                slot.add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> drainAll() {
+        List<Entry<T>> all = new ArrayList<>(overflow);
+        overflow.clear();
+        for (List<Entry<T>>[] level : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                if (level[i] != null) {
+                    all.addAll(level[i]);
+                    level[i] = null;
+                }
+            }
+        }
+        return all;
+    }
+}
@@ -1,30 +1,26 @@
 package me.almana.logisticsnetworks.logic;
 
 import com.mojang.logging.LogUtils;
-import me.almana.logisticsnetworks.Config;
 import me.almana.logisticsnetworks.data.*;
 import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
-import me.almana.logisticsnetworks.filter.AmountFilterData;
-import me.almana.logisticsnetworks.filter.NbtFilterData;
+import me.almana.logisticsnetworks.filter.CompiledFilter;
+import me.almana.logisticsnetworks.filter.NbtMatchCache;
+import me.almana.logisticsnetworks.filter.RegistryIdIndex;
 import me.almana.logisticsnetworks.filter.SlotFilterData;
-import me.almana.logisticsnetworks.registration.ModTags;
+import me.almana.logisticsnetworks.logic.NetworkTopology.ImportTarget;
 import me.almana.logisticsnetworks.upgrade.NodeUpgradeData;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
 import net.minecraft.core.HolderLookup;
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
-import net.neoforged.neoforge.capabilities.Capabilities;
 import net.neoforged.neoforge.energy.IEnergyStorage;
 import net.neoforged.neoforge.fluids.FluidStack;
 import net.neoforged.neoforge.fluids.capability.IFluidHandler;
 import net.neoforged.neoforge.items.IItemHandler;
-import net.neoforged.neoforge.items.IItemHandlerModifiable;
-import net.neoforged.neoforge.items.ItemHandlerHelper;
 import org.slf4j.Logger;
 
 import java.util.*;
@@ -36,198 +32,265 @@ public class TransferEngine {
     private static final float BACKOFF_DECAY_DIVISOR = 3f;
     private static final float BACKOFF_MAX_TICKS = 40f;
     private static final float BACKOFF_MAX_TICKS_ENERGY = 5f;
+    private static final int SATURATION_TICKS = 40;
+    // Transfer result: nothing moved and the inventories are fingerprinted, so polls stay at the channel delay
+    private static final int IDLE_UNCHANGED = 2;
+    // Transfer result: queued on the pass's energy solver, finished once it runs
+    private static final int ENERGY_QUEUED = 3;
+    private static final byte UNMATCHED = 0;
+    private static final byte ACCEPTS = 1;
+    private static final byte REJECTS = 2;
+
+    private record ItemTransferTarget(UUID nodeId, int channelIndex, int routePosition, int importIndex,
+            TargetStateCache.TargetState state,
+            CompiledFilter importFilter, AmountConstraints constraints, boolean[] allowedSlots) {
+    }
 
-    private record ImportTarget(LogisticsNodeEntity node, ChannelData channel, int channelIndex) {
+    private record MoveResult(int moved, int nextSlot) {
     }
 
-    private record ItemTransferTarget(IItemHandler handler, ItemStack[] importFilters,
-            FilterMode importFilterMode, AmountConstraints constraints, boolean hasItemNbtFilter,
-            boolean[] allowedSlots) {
+    private record QueuedEnergy(LogisticsNodeEntity node, ChannelData channel, int channelIndex, int tier,
+            int targetCount) {
     }
 
     private record AmountConstraints(boolean hasExportThreshold, int exportThreshold,
             boolean hasImportThreshold, int importThreshold) {
     }
 
-    public static boolean processNetwork(LogisticsNetwork network, MinecraftServer server) {
+    public static void processNetwork(LogisticsNetwork network, MinecraftServer server,
+            ChannelWakeScheduler scheduler) {
         if (network == null || server == null)
-            return false;
-
-        Set<UUID> nodeUuids = network.getNodeUuids();
-        if (nodeUuids.isEmpty())
-            return false;
-
-        // Deterministic order
-        List<UUID> sortedUuids = new ArrayList<>(nodeUuids);
-        sortedUuids.sort(Comparator.comparingLong(UUID::getMostSignificantBits)
-                .thenComparingLong(UUID::getLeastSignificantBits));
-
-        // Cache nodes and upgrades
-        List<LogisticsNodeEntity> sortedNodes = new ArrayList<>(sortedUuids.size());
-        Map<UUID, Boolean> dimensionalCache = new HashMap<>(sortedUuids.size());
-        Map<UUID, Integer> tierCache = new HashMap<>(sortedUuids.size());
-
-        for (UUID nodeId : sortedUuids) {
-            LogisticsNodeEntity node = findNode(server, nodeId);
-            if (node != null && node.isValidNode()) {
-                sortedNodes.add(node);
-                dimensionalCache.put(node.getUUID(), NodeUpgradeData.hasDimensionalUpgrade(node));
-                tierCache.put(node.getUUID(), NodeUpgradeData.getUpgradeTier(node));
-            } else if (Config.debugMode) {
-                LOGGER.debug("Node {} missing from world, skipping.", nodeId);
-            }
+            return;
+
+        if (network.getNodeUuids().isEmpty()) {
+            network.setSleeping(true);
+            return;
         }
 
-        if (sortedNodes.isEmpty())
-            return false;
+        // Only a network-wide change forces a full pass, otherwise run the woken and dirtied channels
+        boolean fullPass = network.isDirty();
+        network.setDirty(false);
+        Map<UUID, Integer> dueChannels = network.takeDueChannels();
+        Map<UUID, Integer> dirtyChannels = network.takeDirtyChannels();
 
-        Map<UUID, Integer> signalCache = buildSignalCache(sortedNodes);
-        if (signalCache.isEmpty())
-            return false;
+        NetworkTopology topology = network.getTopology();
+        boolean recompiled = false;
+        if (topology == null || topology.isStale()) {
+            // Tags reloaded, routes pruned against the old ones may carry items now
+            if (topology != null) {
+                fullPass = true;
+            }
+            topology = NetworkTopology.compile(network);
+            network.setTopology(topology);
+            recompiled = true;
+        }
 
-        Map<Integer, List<ImportTarget>> itemImports = new HashMap<>();
-        Map<Integer, List<ImportTarget>> fluidImports = new HashMap<>();
-        Map<Integer, List<ImportTarget>> energyImports = new HashMap<>();
+        // Checked only where the pass is network-wide anyway. An awake network whose channels all went
+        // inactive through redstone queues nothing, so it costs nothing until the next edge.
+        if ((fullPass || recompiled) && !hasRunnableExporter(topology)) {
+            // Nothing can move until a config, redstone or membership change wakes the network
+            network.setSleeping(true);
+            return;
+        }
 
-        populateImportCaches(sortedNodes, signalCache, itemImports, fluidImports, energyImports);
+        // Anything that dirtied an importer may have freed space in it, or changed what a filter now accepts
+        TargetSaturation saturation = topology.getSaturation();
+        if (fullPass) {
+            saturation.clear();
+            for (LogisticsNodeEntity node : topology.getNodes()) {
+                node.clearIdleFingerprints(LogisticsNodeEntity.ALL_CHANNELS_MASK);
+            }
+        } else {
+            for (Map.Entry<UUID, Integer> entry : dirtyChannels.entrySet()) {
+                saturation.clear(entry.getKey(), entry.getValue());
+                clearIdleFingerprints(topology, entry.getKey(), entry.getValue());
+            }
+        }
 
-        boolean anyActivePotential = false;
-        for (LogisticsNodeEntity sourceNode : sortedNodes) {
-            if (processNode(sourceNode, itemImports, fluidImports, energyImports,
-                    signalCache, dimensionalCache, tierCache)) {
-                anyActivePotential = true;
+        TargetStateCache targetStates = new TargetStateCache();
+        EnergyFlowSolver<QueuedEnergy> energy = new EnergyFlowSolver<>();
+        if (fullPass) {
+            for (LogisticsNodeEntity sourceNode : topology.getNodes()) {
+                processNode(sourceNode, topology, LogisticsNodeEntity.ALL_CHANNELS_MASK, scheduler, targetStates,
+                        energy);
+            }
+        } else {
+            Map<UUID, Integer> work = collectWork(topology, dueChannels, dirtyChannels);
+            for (Map.Entry<UUID, Integer> entry : work.entrySet()) {
+                LogisticsNodeEntity sourceNode = topology.getNode(entry.getKey());
+                if (sourceNode != null) {
+                    processNode(sourceNode, topology, entry.getValue(), scheduler, targetStates, energy);
+                }
             }
         }
 
-        return anyActivePotential;
+        // Energy exporters queued above move together, then reschedule like any other channel
+        energy.solve((queued, moved) -> finishChannel(queued.node(), queued.channel(), queued.channelIndex(),
+                moved > 0 ? 1 : 0, queued.node().level().getGameTime(), queued.tier(), queued.targetCount(),
+                scheduler));
     }
 
-    private static Map<UUID, Integer> buildSignalCache(List<LogisticsNodeEntity> nodes) {
-        Map<UUID, Integer> signalCache = new HashMap<>();
-        boolean hasAnyExporter = false;
-
-        for (LogisticsNodeEntity node : nodes) {
-            if (!node.isValidNode())
+    // An export channel with a route, its redstone condition met and at least one active target
+    private static boolean hasRunnableExporter(NetworkTopology topology) {
+        for (UUID nodeId : topology.getExporters()) {
+            LogisticsNodeEntity node = topology.getNode(nodeId);
+            if (node == null)
                 continue;
-            boolean needsSignal = false;
-            boolean hasExport = false;
-
             for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
-                ChannelData ch = node.getChannel(i);
-                if (ch != null && ch.isEnabled()) {
-                    if (ch.getRedstoneMode() != RedstoneMode.ALWAYS_ON) {
-                        needsSignal = true;
-                    }
-                    if (ch.getMode() == ChannelMode.EXPORT) {
-                        hasExport = true;
-                    }
-                }
+                NetworkTopology.ExportRoute route = topology.getExportRoute(nodeId, i);
+                ChannelData channel = node.getChannel(i);
+                if (route == null || channel == null || !isChannelActive(node, channel))
+                    continue;
+                if (!getActiveTargets(route).isEmpty())
+                    return true;
             }
+        }
+        return false;
+    }
 
-            if (hasExport)
-                hasAnyExporter = true;
+    // Exporters routing into a dirty importer fingerprinted it too
+    private static void clearIdleFingerprints(NetworkTopology topology, UUID nodeId, int channelMask) {
+        LogisticsNodeEntity node = topology.getNode(nodeId);
+        if (node != null) {
+            node.clearIdleFingerprints(channelMask);
+        }
+        for (Map.Entry<UUID, Integer> feeder : topology.getFeeders(nodeId).entrySet()) {
+            LogisticsNodeEntity feederNode = topology.getNode(feeder.getKey());
+            if (feederNode != null) {
+                feederNode.clearIdleFingerprints(feeder.getValue() & channelMask);
+            }
+        }
+    }
 
-            if (node.level() instanceof ServerLevel level) {
-                signalCache.put(node.getUUID(), needsSignal ? level.getBestNeighborSignal(node.getAttachedPos()) : 0);
+    // A dirty importer channel also wakes every exporter routing into it
+    private static Map<UUID, Integer> collectWork(NetworkTopology topology, Map<UUID, Integer> dueChannels,
+            Map<UUID, Integer> dirtyChannels) {
+        if (dirtyChannels.isEmpty())
+            return dueChannels;
+
+        Map<UUID, Integer> work = new LinkedHashMap<>(dueChannels);
+        for (Map.Entry<UUID, Integer> entry : dirtyChannels.entrySet()) {
+            int dirtyMask = entry.getValue();
+            work.merge(entry.getKey(), dirtyMask, (a, b) -> a | b);
+            for (Map.Entry<UUID, Integer> feeder : topology.getFeeders(entry.getKey()).entrySet()) {
+                int mask = feeder.getValue() & dirtyMask;
+                if (mask != 0) {
+                    work.merge(feeder.getKey(), mask, (a, b) -> a | b);
+                }
             }
         }
+        return work;
+    }
 
-        return hasAnyExporter ? signalCache : Collections.emptyMap();
+    // The node caches its signal, neighbour updates keep it current
+    private static boolean isChannelActive(LogisticsNodeEntity node, ChannelData channel) {
+        RedstoneMode mode = channel.getRedstoneMode();
+        if (mode == RedstoneMode.ALWAYS_ON)
+            return true;
+        return isRedstoneActive(mode, node.getRedstoneSignal());
     }
 
-    private static void populateImportCaches(List<LogisticsNodeEntity> nodes, Map<UUID, Integer> signalCache,
-            Map<Integer, List<ImportTarget>> itemImports,
-            Map<Integer, List<ImportTarget>> fluidImports,
-            Map<Integer, List<ImportTarget>> energyImports) {
-        for (LogisticsNodeEntity node : nodes) {
-            int signal = signalCache.getOrDefault(node.getUUID(), 0);
-            for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
-                ChannelData ch = node.getChannel(i);
-                if (ch != null && ch.isEnabled() && ch.getMode() == ChannelMode.IMPORT) {
-                    if (isRedstoneActive(ch.getRedstoneMode(), signal)) {
-                        switch (ch.getType()) {
-                            case ITEM -> itemImports.computeIfAbsent(i, k -> new ArrayList<>())
-                                    .add(new ImportTarget(node, ch, i));
-                            case FLUID -> fluidImports.computeIfAbsent(i, k -> new ArrayList<>())
-                                    .add(new ImportTarget(node, ch, i));
-                            case ENERGY -> energyImports.computeIfAbsent(i, k -> new ArrayList<>())
-                                    .add(new ImportTarget(node, ch, i));
-                        }
-                    }
-                }
+    private static List<ImportTarget> getActiveTargets(NetworkTopology.ExportRoute route) {
+        if (!route.hasConditionalTargets())
+            return route.targets();
+
+        List<ImportTarget> active = new ArrayList<>(route.targets().size());
+        for (ImportTarget target : route.targets()) {
+            if (isChannelActive(target.node(), target.channel())) {
+                active.add(target);
             }
         }
+        return active;
     }
 
-    private static boolean processNode(LogisticsNodeEntity sourceNode,
-            Map<Integer, List<ImportTarget>> itemImports,
-            Map<Integer, List<ImportTarget>> fluidImports,
-            Map<Integer, List<ImportTarget>> energyImports,
-            Map<UUID, Integer> signalCache,
-            Map<UUID, Boolean> dimensionalCache,
-            Map<UUID, Integer> tierCache) {
+    private static void processNode(LogisticsNodeEntity sourceNode, NetworkTopology topology, int channelMask,
+            ChannelWakeScheduler scheduler, TargetStateCache targetStates, EnergyFlowSolver<QueuedEnergy> energy) {
 
         if (!sourceNode.isValidNode())
-            return false;
+            return;
 
         ServerLevel sourceLevel = (ServerLevel) sourceNode.level();
         long gameTime = sourceLevel.getGameTime();
-        int redstoneSignal = signalCache.getOrDefault(sourceNode.getUUID(), 0);
-        boolean hasActivePotential = false;
-        int sourceTier = tierCache.getOrDefault(sourceNode.getUUID(), 0);
+        int sourceTier = topology.getTier(sourceNode.getUUID());
+        // Item channels of this node reading the same side share one source summary, last entry is unsided
+        SourceSlotIndex[] sourceIndexes = new SourceSlotIndex[Direction.values().length + 1];
 
         for (int i = 0; i < LogisticsNodeEntity.CHANNEL_COUNT; i++) {
+            if ((channelMask & (1 << i)) == 0)
+                continue;
             ChannelData channel = sourceNode.getChannel(i);
             if (channel == null || !channel.isEnabled() || channel.getMode() != ChannelMode.EXPORT)
                 continue;
-            if (!isRedstoneActive(channel.getRedstoneMode(), redstoneSignal))
+            // Inactive channels are not queued, a signal edge or config change dirties them again
+            if (!isChannelActive(sourceNode, channel))
                 continue;
 
-            List<ImportTarget> targets = switch (channel.getType()) {
-                case FLUID -> fluidImports.get(i);
-                case ENERGY -> energyImports.get(i);
-                default -> itemImports.get(i);
-            };
-
-            if (targets == null || targets.isEmpty())
+            NetworkTopology.ExportRoute route = topology.getExportRoute(sourceNode.getUUID(), i);
+            if (route == null)
                 continue;
 
-            hasActivePotential = true;
+            // Likewise an edge at a gated importer wakes the exporters feeding it
+            List<ImportTarget> targets = getActiveTargets(route);
+            if (targets.isEmpty())
+                continue;
 
             // Backoff/Cool-down Check
-            if (isOnCooldown(sourceNode, channel, i, sourceTier, gameTime))
+            long nextRun = getNextEligibleTick(sourceNode, channel, i, sourceTier);
+            if (gameTime < nextRun) {
+                scheduler.schedule(sourceNode, i, nextRun);
                 continue;
+            }
 
-            targets = orderTargets(targets, channel.getDistributionMode(), sourceNode, i);
+            targets = rotateTargets(targets, channel.getDistributionMode(), sourceNode, i);
 
             int configuredBatch = getBatchLimit(channel.getType(), sourceTier);
             int effectiveBatchSize = Math.max(1, Math.min(channel.getBatchSize(), configuredBatch));
 
             int result = switch (channel.getType()) {
                 case FLUID ->
-                    transferFluids(sourceNode, sourceLevel, channel, targets, effectiveBatchSize, dimensionalCache);
+                    transferFluids(sourceNode, sourceLevel, channel, targets, effectiveBatchSize, topology);
                 case ENERGY ->
-                    transferEnergy(sourceNode, sourceLevel, channel, targets, effectiveBatchSize, dimensionalCache);
+                    queueEnergy(sourceNode, sourceLevel, channel, i, targets, effectiveBatchSize, topology, energy,
+                            sourceTier);
                 default ->
-                    transferItems(sourceNode, sourceLevel, channel, targets, effectiveBatchSize, dimensionalCache);
+                    transferItems(sourceNode, sourceLevel, channel, i, route, targets, effectiveBatchSize,
+                            topology, sourceIndexes, targetStates);
             };
 
-            if (result < 0)
-                continue;
+            if (result != ENERGY_QUEUED) {
+                finishChannel(sourceNode, channel, i, result, gameTime, sourceTier, targets.size(), scheduler);
+            }
+        }
+    }
 
-            updateBackoff(sourceNode, channel, i, result > 0, gameTime, sourceTier, targets.size());
+    private static void finishChannel(LogisticsNodeEntity sourceNode, ChannelData channel, int channelIndex,
+            int result, long gameTime, int sourceTier, int targetCount, ChannelWakeScheduler scheduler) {
+        if (result == IDLE_UNCHANGED) {
+            // The fingerprint check is cheap, so it stands in for backoff
+            sourceNode.setLastExecution(channelIndex, gameTime);
+            scheduler.schedule(sourceNode, channelIndex, gameTime + getConfiguredDelay(channel, sourceTier));
+            return;
         }
 
-        return hasActivePotential;
+        if (result < 0) {
+            // Source or targets unavailable, retry after the configured delay
+            scheduler.schedule(sourceNode, channelIndex, gameTime + getConfiguredDelay(channel, sourceTier));
+            return;
+        }
+
+        updateBackoff(sourceNode, channel, channelIndex, result > 0, gameTime, sourceTier, targetCount);
+        scheduler.schedule(sourceNode, channelIndex,
+                getNextEligibleTick(sourceNode, channel, channelIndex, sourceTier));
     }
 
-    private static boolean isOnCooldown(LogisticsNodeEntity node, ChannelData channel, int index, int tier,
-            long gameTime) {
-        long lastRun = node.getLastExecution(index);
-        int configuredDelay = channel.getType() == ChannelType.ENERGY ? 1
+    private static int getConfiguredDelay(ChannelData channel, int tier) {
+        return channel.getType() == ChannelType.ENERGY ? 1
                 : Math.max(channel.getTickDelay(), NodeUpgradeData.getMinTickDelay(tier));
-        int effectiveDelay = Math.max(configuredDelay, (int) node.getBackoffTicks(index));
-        return (gameTime - lastRun) < effectiveDelay;
+    }
+
+    private static long getNextEligibleTick(LogisticsNodeEntity node, ChannelData channel, int index, int tier) {
+        int effectiveDelay = Math.max(getConfiguredDelay(channel, tier), (int) node.getBackoffTicks(index));
+        return node.getLastExecution(index) + effectiveDelay;
     }
 
     private static int getBatchLimit(ChannelType type, int tier) {
@@ -241,8 +304,7 @@ public class TransferEngine {
     private static void updateBackoff(LogisticsNodeEntity node, ChannelData channel, int index, boolean success,
             long gameTime, int tier, int targetCount) {
         node.setLastExecution(index, gameTime);
-        int configuredDelay = channel.getType() == ChannelType.ENERGY ? 1
-                : Math.max(channel.getTickDelay(), NodeUpgradeData.getMinTickDelay(tier));
+        int configuredDelay = getConfiguredDelay(channel, tier);
 
         if (success) {
             float curBackoff = node.getBackoffTicks(index);
@@ -259,92 +321,76 @@ public class TransferEngine {
         }
     }
 
-    private static List<ImportTarget> orderTargets(List<ImportTarget> targets, DistributionMode mode,
+    // Static orderings are baked into the topology, only the round-robin rotation is per call
+    private static List<ImportTarget> rotateTargets(List<ImportTarget> targets, DistributionMode mode,
             LogisticsNodeEntity sourceNode, int channelIndex) {
-        if (targets.size() <= 1)
+        if (targets.size() <= 1 || mode != DistributionMode.ROUND_ROBIN)
             return targets;
 
-        switch (mode) {
-            case PRIORITY -> {
-                targets.sort((a, b) -> Integer.compare(b.channel.getPriority(), a.channel.getPriority()));
-                return targets;
-            }
-            case NEAREST_FIRST -> {
-                double sx = sourceNode.getX(), sy = sourceNode.getY(), sz = sourceNode.getZ();
-                targets.sort(Comparator.comparingDouble(t -> t.node.distanceToSqr(sx, sy, sz)));
-                return targets;
-            }
-            case FARTHEST_FIRST -> {
-                double sx = sourceNode.getX(), sy = sourceNode.getY(), sz = sourceNode.getZ();
-                targets.sort(
-                        (a, b) -> Double.compare(b.node.distanceToSqr(sx, sy, sz), a.node.distanceToSqr(sx, sy, sz)));
-                return targets;
-            }
-            case ROUND_ROBIN -> {
-                int startIdx = sourceNode.getRoundRobinIndex(channelIndex) % targets.size();
-                if (startIdx == 0)
-                    return targets;
-                List<ImportTarget> rotated = new ArrayList<>(targets.size());
-                for (int i = 0; i < targets.size(); i++) {
-                    rotated.add(targets.get((startIdx + i) % targets.size()));
-                }
-                return rotated;
-            }
-            default -> {
-                return targets;
-            }
+        int startIdx = sourceNode.getRoundRobinIndex(channelIndex) % targets.size();
+        if (startIdx == 0)
+            return targets;
+        List<ImportTarget> rotated = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            rotated.add(targets.get((startIdx + i) % targets.size()));
         }
+        return rotated;
     }
 
     private static int transferItems(LogisticsNodeEntity sourceNode, ServerLevel sourceLevel,
-            ChannelData exportChannel, List<ImportTarget> targets, int batchLimit,
-            Map<UUID, Boolean> dimensionalCache) {
+            ChannelData exportChannel, int channelIndex, NetworkTopology.ExportRoute route,
+            List<ImportTarget> targets, int batchLimit, NetworkTopology topology, SourceSlotIndex[] sourceIndexes,
+            TargetStateCache targetStates) {
 
         BlockPos sourcePos = sourceNode.getAttachedPos();
         if (!sourceLevel.isLoaded(sourcePos))
             return -1;
-        IItemHandler sourceHandler = sourceLevel.getCapability(Capabilities.ItemHandler.BLOCK, sourcePos,
+        IItemHandler sourceHandler = sourceNode.getCapabilityCache().getItemHandler(sourceLevel,
                 exportChannel.getIoDirection());
         if (sourceHandler == null)
             return -1;
 
-        boolean sourceDimensional = dimensionalCache.getOrDefault(sourceNode.getUUID(), false);
+        boolean sourceDimensional = topology.isDimensional(sourceNode.getUUID());
         boolean anyReachable = false;
         List<ItemTransferTarget> reachableTargets = new ArrayList<>(targets.size());
         ItemStack[] exportFilters = exportChannel.getFilterItems();
         boolean[] sourceAllowedSlots = buildSlotAccessMask(sourceHandler, exportFilters);
 
         for (ImportTarget target : targets) {
-            if (target.node.getUUID().equals(sourceNode.getUUID()))
+            if (target.node().getUUID().equals(sourceNode.getUUID()))
                 continue;
-            if (!target.node.isValidNode())
+            if (!target.node().isValidNode())
                 continue;
-            if (!canReach(sourceNode, target.node, sourceDimensional, dimensionalCache))
+            if (!canReach(sourceNode, target.node(), sourceDimensional, topology))
                 continue;
 
             anyReachable = true;
-            ServerLevel targetLevel = (ServerLevel) target.node.level();
-            BlockPos targetPos = target.node.getAttachedPos();
-            if (!targetLevel.isLoaded(targetPos))
-                continue;
+            // Topology members are loaded, chunk unloads recompile it before the next pass
+            ServerLevel targetLevel = (ServerLevel) target.node().level();
 
-            IItemHandler targetHandler = targetLevel.getCapability(Capabilities.ItemHandler.BLOCK, targetPos,
-                    target.channel.getIoDirection());
+            IItemHandler targetHandler = target.node().getCapabilityCache().getItemHandler(targetLevel,
+                    target.channel().getIoDirection());
             if (targetHandler == null)
                 continue;
 
-            ItemStack[] importFilters = target.channel.getFilterItems();
-            boolean[] targetAllowedSlots = buildSlotAccessMask(targetHandler, importFilters);
+            ItemStack[] importFilters = target.channel().getFilterItems();
+            TargetStateCache.TargetState targetState = targetStates.get(targetHandler,
+                    target.node().getCapabilityCache().getItemCountIndex(target.channel().getIoDirection()));
+            boolean[] targetAllowedSlots = targetState.getAllowedSlots(target.channel(),
+                    () -> buildSlotAccessMask(targetHandler, importFilters));
             if (targetAllowedSlots != null && !hasAnyAllowedSlots(targetAllowedSlots)) {
                 continue;
             }
 
             reachableTargets.add(new ItemTransferTarget(
-                    targetHandler,
-                    importFilters,
-                    target.channel.getFilterMode(),
-                    collectAmountConstraints(exportFilters, importFilters),
-                    FilterLogic.hasConfiguredItemNbtFilter(importFilters),
+                    target.node().getUUID(),
+                    target.channelIndex(),
+                    route.positionOf(target),
+                    route.importIndexes()[route.positionOf(target)],
+                    targetState,
+                    target.channel().getCompiledFilter(sourceLevel.registryAccess()),
+                    collectAmountConstraints(exportChannel.getCompiledFilter(sourceLevel.registryAccess()),
+                            target.channel().getCompiledFilter(sourceLevel.registryAccess())),
                     targetAllowedSlots));
         }
         if (!anyReachable)
@@ -352,50 +398,105 @@ public class TransferEngine {
         if (reachableTargets.isEmpty())
             return 0;
 
-        int moved = executeMove(sourceHandler, reachableTargets, batchLimit,
-                exportFilters, exportChannel.getFilterMode(),
+        // Nothing moved last time and none of these inventories changed since, a retry would fail the same way.
+        // Only fingerprinted after a failure, so channels that keep succeeding never pay for it.
+        long gameTime = sourceLevel.getGameTime();
+        long fingerprint = InventoryFingerprint.NONE;
+        if (sourceNode.getIdleFingerprint(channelIndex) != InventoryFingerprint.NONE
+                && gameTime < sourceNode.getIdleFingerprintExpiry(channelIndex)) {
+            fingerprint = fingerprint(topology, sourceHandler, reachableTargets);
+            if (fingerprint == sourceNode.getIdleFingerprint(channelIndex))
+                return IDLE_UNCHANGED;
+        }
+
+        Direction side = exportChannel.getIoDirection();
+        int sideIndex = side == null ? sourceIndexes.length - 1 : side.ordinal();
+        SourceSlotIndex sourceIndex = sourceIndexes[sideIndex];
+        if (sourceIndex == null || !sourceIndex.isFor(sourceHandler)) {
+            sourceIndex = SourceSlotIndex.build(sourceHandler);
+            sourceIndexes[sideIndex] = sourceIndex;
+        }
+
+        MoveResult result = executeMove(sourceHandler, sourceIndex, reachableTargets, batchLimit,
+                exportChannel.getCompiledFilter(sourceLevel.registryAccess()),
+                route,
+                topology.getItemFilterIndex(channelIndex, sourceLevel.registryAccess()),
                 sourceAllowedSlots,
+                sourceNode.getSlotCursor(channelIndex),
+                topology.getSaturation(),
+                gameTime,
                 sourceLevel.registryAccess());
-        return moved > 0 ? 1 : 0;
+        sourceNode.setSlotCursor(channelIndex, result.nextSlot());
+        if (result.moved() > 0) {
+            targetStates.invalidate(sourceHandler);
+            sourceNode.setIdleFingerprint(channelIndex, InventoryFingerprint.NONE, 0L);
+            return 1;
+        }
+
+        // Nothing moved, so the inventories still match a fingerprint taken before the attempt.
+        // Fingerprints miss handler state outside the stacks, trust them no longer than the longest backoff.
+        if (fingerprint == InventoryFingerprint.NONE) {
+            fingerprint = fingerprint(topology, sourceHandler, reachableTargets);
+        }
+        sourceNode.setIdleFingerprint(channelIndex, fingerprint, gameTime + (long) BACKOFF_MAX_TICKS);
+        // Sampled handlers could change unseen, those fall back to the backoff
+        return fingerprint == InventoryFingerprint.NONE ? 0 : IDLE_UNCHANGED;
+    }
+
+    // Covers the compiled topology too, so a config change never matches an old fingerprint.
+    // NONE when any handler is too large to hash every slot.
+    private static long fingerprint(NetworkTopology topology, IItemHandler source,
+            List<ItemTransferTarget> targets) {
+        if (!InventoryFingerprint.isExact(source))
+            return InventoryFingerprint.NONE;
+        for (ItemTransferTarget target : targets) {
+            if (!InventoryFingerprint.isExact(target.state().handler()))
+                return InventoryFingerprint.NONE;
+        }
+        long hash = InventoryFingerprint.mix(System.identityHashCode(topology), InventoryFingerprint.of(source));
+        for (ItemTransferTarget target : targets) {
+            hash = InventoryFingerprint.mix(hash, InventoryFingerprint.of(target.state().handler()));
+        }
+        return hash;
     }
 
     private static int transferFluids(LogisticsNodeEntity sourceNode, ServerLevel sourceLevel,
             ChannelData exportChannel, List<ImportTarget> targets, int batchLimitMb,
-            Map<UUID, Boolean> dimensionalCache) {
+            NetworkTopology topology) {
 
         BlockPos sourcePos = sourceNode.getAttachedPos();
         if (!sourceLevel.isLoaded(sourcePos))
             return -1;
-        IFluidHandler sourceHandler = sourceLevel.getCapability(Capabilities.FluidHandler.BLOCK, sourcePos,
+        IFluidHandler sourceHandler = sourceNode.getCapabilityCache().getFluidHandler(sourceLevel,
                 exportChannel.getIoDirection());
         if (sourceHandler == null)
             return -1;
 
-        boolean sourceDimensional = dimensionalCache.getOrDefault(sourceNode.getUUID(), false);
+        boolean sourceDimensional = topology.isDimensional(sourceNode.getUUID());
         boolean anyReachable = false;
 
         for (ImportTarget target : targets) {
-            if (target.node.getUUID().equals(sourceNode.getUUID()))
+            if (target.node().getUUID().equals(sourceNode.getUUID()))
                 continue;
-            if (!target.node.isValidNode())
+            if (!target.node().isValidNode())
                 continue;
-            if (!canReach(sourceNode, target.node, sourceDimensional, dimensionalCache))
+            if (!canReach(sourceNode, target.node(), sourceDimensional, topology))
                 continue;
 
             anyReachable = true;
-            ServerLevel targetLevel = (ServerLevel) target.node.level();
-            BlockPos targetPos = target.node.getAttachedPos();
-            if (!targetLevel.isLoaded(targetPos))
-                continue;
+            // Topology members are loaded, chunk unloads recompile it before the next pass
+            ServerLevel targetLevel = (ServerLevel) target.node().level();
 
-            IFluidHandler targetHandler = targetLevel.getCapability(Capabilities.FluidHandler.BLOCK, targetPos,
-                    target.channel.getIoDirection());
+            IFluidHandler targetHandler = target.node().getCapabilityCache().getFluidHandler(targetLevel,
+                    target.channel().getIoDirection());
             if (targetHandler == null)
                 continue;
 
             if (executeFluidMove(sourceHandler, targetHandler, batchLimitMb,
-                    exportChannel.getFilterItems(), exportChannel.getFilterMode(),
-                    target.channel.getFilterItems(), target.channel.getFilterMode(),
+                    exportChannel.getCompiledFilter(sourceLevel.registryAccess()),
+                    target.channel().getCompiledFilter(sourceLevel.registryAccess()),
+                    sourceNode.getCapabilityCache().getFluidCountIndex(exportChannel.getIoDirection()),
+                    target.node().getCapabilityCache().getFluidCountIndex(target.channel().getIoDirection()),
                     sourceLevel.registryAccess())) {
                 return 1;
             }
@@ -403,75 +504,79 @@ public class TransferEngine {
         return anyReachable ? 0 : -1;
     }
 
-    private static int transferEnergy(LogisticsNodeEntity sourceNode, ServerLevel sourceLevel,
-            ChannelData exportChannel, List<ImportTarget> targets, int batchLimitRF,
-            Map<UUID, Boolean> dimensionalCache) {
+    // Queues the exporter on the pass's energy solver, handler calls happen once all exporters are known
+    private static int queueEnergy(LogisticsNodeEntity sourceNode, ServerLevel sourceLevel,
+            ChannelData exportChannel, int channelIndex, List<ImportTarget> targets, int batchLimitRF,
+            NetworkTopology topology, EnergyFlowSolver<QueuedEnergy> energy, int sourceTier) {
 
         BlockPos sourcePos = sourceNode.getAttachedPos();
         if (!sourceLevel.isLoaded(sourcePos))
             return -1;
-        IEnergyStorage sourceHandler = sourceLevel.getCapability(Capabilities.EnergyStorage.BLOCK, sourcePos,
+        IEnergyStorage sourceHandler = sourceNode.getCapabilityCache().getEnergyStorage(sourceLevel,
                 exportChannel.getIoDirection());
         if (sourceHandler == null || !sourceHandler.canExtract())
             return -1;
 
-        boolean sourceDimensional = dimensionalCache.getOrDefault(sourceNode.getUUID(), false);
-        int remaining = batchLimitRF;
+        boolean sourceDimensional = topology.isDimensional(sourceNode.getUUID());
         boolean anyReachable = false;
+        List<IEnergyStorage> targetHandlers = new ArrayList<>(targets.size());
 
         for (ImportTarget target : targets) {
-            if (remaining <= 0)
-                break;
-            if (target.node.getUUID().equals(sourceNode.getUUID()))
+            if (target.node().getUUID().equals(sourceNode.getUUID()))
                 continue;
-            if (!target.node.isValidNode())
+            if (!target.node().isValidNode())
                 continue;
-            if (!canReach(sourceNode, target.node, sourceDimensional, dimensionalCache))
+            if (!canReach(sourceNode, target.node(), sourceDimensional, topology))
                 continue;
 
             anyReachable = true;
-            ServerLevel targetLevel = (ServerLevel) target.node.level();
-            BlockPos targetPos = target.node.getAttachedPos();
-            if (!targetLevel.isLoaded(targetPos))
-                continue;
+            // Topology members are loaded, chunk unloads recompile it before the next pass
+            ServerLevel targetLevel = (ServerLevel) target.node().level();
 
-            IEnergyStorage targetHandler = targetLevel.getCapability(Capabilities.EnergyStorage.BLOCK, targetPos,
-                    target.channel.getIoDirection());
+            IEnergyStorage targetHandler = target.node().getCapabilityCache().getEnergyStorage(targetLevel,
+                    target.channel().getIoDirection());
             if (targetHandler == null || !targetHandler.canReceive())
                 continue;
-
-            int moved = executeEnergyMove(sourceHandler, targetHandler, remaining);
-            if (moved > 0)
-                remaining -= moved;
+            targetHandlers.add(targetHandler);
         }
 
         if (!anyReachable)
             return -1;
-        return remaining < batchLimitRF ? 1 : 0;
+        if (targetHandlers.isEmpty())
+            return 0;
+        energy.add(new QueuedEnergy(sourceNode, exportChannel, channelIndex, sourceTier, targets.size()),
+                sourceHandler, batchLimitRF, targetHandlers);
+        return ENERGY_QUEUED;
     }
 
     private static boolean canReach(LogisticsNodeEntity source, LogisticsNodeEntity target, boolean sourceDim,
-            Map<UUID, Boolean> dimCache) {
+            NetworkTopology topology) {
         if (source.level().dimension().equals(target.level().dimension()))
             return true;
-        return sourceDim && dimCache.getOrDefault(target.getUUID(), false);
+        return sourceDim && topology.isDimensional(target.getUUID());
     }
 
-    private static int executeMove(IItemHandler source, List<ItemTransferTarget> targets, int limit,
-            ItemStack[] exportFilters, FilterMode exportFilterMode,
+    private static MoveResult executeMove(IItemHandler source, SourceSlotIndex sourceIndex,
+            List<ItemTransferTarget> targets, int limit,
+            CompiledFilter exportFilter,
+            NetworkTopology.ExportRoute route,
+            ImportFilterIndex filterIndex,
             boolean[] sourceAllowedSlots,
+            int startSlot,
+            TargetSaturation saturation,
+            long gameTime,
             HolderLookup.Provider provider) {
 
         int remaining = limit;
-        boolean hasExportNbtFilter = FilterLogic.hasConfiguredItemNbtFilter(exportFilters);
+        boolean hasExportNbtFilter = exportFilter.hasItemNbtRule();
         boolean hasAnyImportNbtFilter = false;
         for (ItemTransferTarget target : targets) {
-            if (target.hasItemNbtFilter()) {
+            if (target.importFilter().hasItemNbtRule()) {
                 hasAnyImportNbtFilter = true;
                 break;
             }
         }
-        boolean hasNbtFilter = hasExportNbtFilter || hasAnyImportNbtFilter;
+        NbtMatchCache nbtCache = hasExportNbtFilter || hasAnyImportNbtFilter ? new NbtMatchCache() : null;
 
         // Build amount constraint caches to avoid repeated full-inventory scans
         boolean anyAmountConstraints = false;
@@ -481,20 +586,70 @@ public class TransferEngine {
                 break;
             }
         }
-        Map<Item, Integer> sourceItemCounts = anyAmountConstraints ? buildItemCountCache(source) : null;
-        List<Map<Item, Integer>> targetItemCounts = null;
-        if (anyAmountConstraints) {
-            targetItemCounts = new ArrayList<>(targets.size());
-            for (ItemTransferTarget t : targets) {
-                targetItemCounts.add(
-                        t.constraints().hasImportThreshold ? buildItemCountCache(t.handler()) : null);
+        Map<Item, Integer> sourceItemCounts = anyAmountConstraints ? sourceIndex.countsByItem() : null;
+
+        // Filters run once per distinct item, only slots some target would take are visited.
+        // Import filters are looked up by item id; ones with component rules behind the first
+        // accepting target are only matched if the targets ahead fill up.
+        List<SourceSlotIndex.Group> groups = sourceIndex.groups();
+        byte[][] verdictsByGroup = new byte[groups.size()][];
+        BitSet candidateSlots = new BitSet();
+        for (SourceSlotIndex.Group group : groups) {
+            if (group.slots().isEmpty())
+                continue;
+            ItemStack sample = group.sample();
+            if (RegistryIdIndex.isBlacklisted(sample.getItem()))
+                continue;
+            if (!exportFilter.matchesItem(sample, provider, nbtCache))
+                continue;
+            BitSet accepting = filterIndex.getAccepting(sample.getItem());
+            BitSet componentDependent = filterIndex.getComponentDependent();
+            int firstAccepting = getFirstAcceptingPosition(route, accepting, componentDependent, sample, provider,
+                    nbtCache);
+            if (firstAccepting == RouteAffinity.NONE)
+                continue;
+
+            byte[] verdicts = new byte[targets.size()];
+            boolean anyAccepts = false;
+            for (int targetIndex = 0; targetIndex < targets.size(); targetIndex++) {
+                ItemTransferTarget target = targets.get(targetIndex);
+                if (target.routePosition() < firstAccepting
+                        || saturation.isSaturated(target.nodeId(), target.channelIndex(), sample, gameTime)) {
+                    verdicts[targetIndex] = REJECTS;
+                } else if (target.routePosition() == firstAccepting || accepting.get(target.importIndex())) {
+                    verdicts[targetIndex] = ACCEPTS;
+                    anyAccepts = true;
+                } else if (!componentDependent.get(target.importIndex())) {
+                    verdicts[targetIndex] = REJECTS;
+                } else if (!anyAccepts) {
+                    verdicts[targetIndex] = target.importFilter().matchesItem(sample, provider, nbtCache) ? ACCEPTS
+                            : REJECTS;
+                    anyAccepts = verdicts[targetIndex] == ACCEPTS;
+                }
+            }
+            if (!anyAccepts)
+                continue;
+            verdictsByGroup[group.id()] = verdicts;
+            candidateSlots.or(group.slots());
+        }
+        if (sourceAllowedSlots != null) {
+            for (int slot = candidateSlots.nextSetBit(0); slot >= 0; slot = candidateSlots.nextSetBit(slot + 1)) {
+                if (slot >= sourceAllowedSlots.length || !sourceAllowedSlots[slot]) {
+                    candidateSlots.clear(slot);
+                }
             }
         }
 
-        for (int slot = 0; slot < source.getSlots() && remaining > 0; slot++) {
-            if (sourceAllowedSlots != null && (slot >= sourceAllowedSlots.length || !sourceAllowedSlots[slot])) {
+        // Resume where the last operation stopped and wrap, so blocked leading slots are not re-tried first
+        int start = startSlot < source.getSlots() ? startSlot : 0;
+        int lastMovedSlot = -1;
+        for (int slot = firstSlotFrom(candidateSlots, start); slot >= 0 && remaining > 0;
+                slot = nextSlotAfter(candidateSlots, slot, start)) {
+            SourceSlotIndex.Group group = sourceIndex.groupAt(slot);
+            // Regrouped since the filter pass, only possible when the source is also a target
+            if (group == null || group.id() >= verdictsByGroup.length || verdictsByGroup[group.id()] == null)
                 continue;
-            }
+            byte[] verdicts = verdictsByGroup[group.id()];
             boolean[] blockedTargets = new boolean[targets.size()];
             int openTargets = targets.size();
 
@@ -502,18 +657,10 @@ public class TransferEngine {
                 ItemStack extracted = source.extractItem(slot, remaining, true);
                 if (extracted.isEmpty())
                     break;
-                if (extracted.is(ModTags.RESOURCE_BLACKLIST_ITEMS))
+                // Slot changed since indexing, leave it for the next operation
+                if (!ItemStack.isSameItemSameComponents(extracted, group.sample()))
                     break;
 
-                CompoundTag candidateComponents = (provider != null && hasNbtFilter)
-                        ? NbtFilterData.getSerializedComponents(extracted, provider)
-                        : null;
-
-                if (provider != null) {
-                    if (!FilterLogic.matchesItem(exportFilters, exportFilterMode, extracted, provider, candidateComponents))
-                        break;
-                }
-
                 int slotRemaining = Math.min(extracted.getCount(), remaining);
                 boolean movedFromSlot = false;
 
@@ -525,8 +672,12 @@ public class TransferEngine {
                     if (remaining <= 0 || slotRemaining <= 0)
                         break;
 
-                    if (provider != null && !FilterLogic.matchesItem(target.importFilters(), target.importFilterMode(),
-                            extracted, provider, candidateComponents)) {
+                    if (verdicts[targetIndex] == UNMATCHED) {
+                        verdicts[targetIndex] = target.importFilter().matchesItem(group.sample(), provider, nbtCache)
+                                ? ACCEPTS
+                                : REJECTS;
+                    }
+                    if (verdicts[targetIndex] != ACCEPTS) {
                         continue;
                     }
 
@@ -536,7 +687,7 @@ public class TransferEngine {
                         allowedByAmount = extracted.getCount();
                     } else {
                         allowedByAmount = getAllowedTransferCached(extracted, target.constraints(),
-                                sourceItemCounts, targetItemCounts.get(targetIndex));
+                                sourceItemCounts, target.state());
                     }
                     if (allowedByAmount <= 0)
                         continue;
@@ -549,12 +700,16 @@ public class TransferEngine {
                     if (toMove.isEmpty())
                         break;
 
-                    ItemStack uninserted = insertItemWithAllowedSlots(target.handler(), toMove, false,
-                            target.allowedSlots());
+                    ItemStack uninserted = target.state().getSlotIndex().insert(toMove, target.allowedSlots());
                     int moved = toMove.getCount() - uninserted.getCount();
                     if (!uninserted.isEmpty()) {
                         source.insertItem(slot, uninserted, false);
+                        // Full for this item, every exporter skips it until it expires or the importer changes
+                        saturation.markSaturated(target.nodeId(), target.channelIndex(), extracted,
+                                gameTime + SATURATION_TICKS);
+                        verdicts[targetIndex] = REJECTS;
                     }
+                    sourceIndex.refresh(slot);
                     if (moved <= 0) {
                         blockedTargets[targetIndex] = true;
                         openTargets--;
@@ -562,19 +717,14 @@ public class TransferEngine {
                     }
 
                     movedFromSlot = true;
+                    lastMovedSlot = slot;
                     remaining -= moved;
                     slotRemaining -= moved;
 
-                    // Update amount constraint caches incrementally
-                    if (anyAmountConstraints) {
-                        Item movedItem = extracted.getItem();
-                        if (sourceItemCounts != null) {
-                            sourceItemCounts.merge(movedItem, -moved, Integer::sum);
-                        }
-                        Map<Item, Integer> tgtCache = targetItemCounts.get(targetIndex);
-                        if (tgtCache != null) {
-                            tgtCache.merge(movedItem, moved, Integer::sum);
-                        }
+                    // Update amount constraint caches incrementally, target counts are shared for the pass
+                    target.state().onInserted(extracted.getItem(), moved);
+                    if (sourceItemCounts != null) {
+                        sourceItemCounts.merge(extracted.getItem(), -moved, Integer::sum);
                     }
                 }
 
@@ -583,128 +733,65 @@ public class TransferEngine {
                 }
             }
         }
-        return limit - remaining;
+        return new MoveResult(limit - remaining, lastMovedSlot >= 0 ? lastMovedSlot : start);
     }
 
-    private static ItemStack insertItemWithAllowedSlots(IItemHandler handler, ItemStack stack, boolean simulate,
-            boolean[] allowedSlots) {
-        if (stack.isEmpty()) {
-            return ItemStack.EMPTY;
-        }
-        if (allowedSlots == null) {
-            return ItemHandlerHelper.insertItemStacked(handler, stack, simulate);
-        }
-        if (handler instanceof IItemHandlerModifiable modifiable) {
-            return insertItemStrictAllowedSlots(modifiable, stack, simulate, allowedSlots);
-        }
-
-        ItemStack remaining = stack.copy();
-
-        // First pass: merge into matching non-empty stacks.
-        for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
-            if (slot >= allowedSlots.length || !allowedSlots[slot]) {
-                continue;
-            }
-            ItemStack slotStack = handler.getStackInSlot(slot);
-            if (slotStack.isEmpty()) {
-                continue;
-            }
-            if (!ItemStack.isSameItemSameComponents(slotStack, remaining)) {
-                continue;
-            }
-            remaining = handler.insertItem(slot, remaining, simulate);
-        }
-
-        // Second pass: fill empty slots.
-        for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
-            if (slot >= allowedSlots.length || !allowedSlots[slot]) {
-                continue;
-            }
-            ItemStack slotStack = handler.getStackInSlot(slot);
-            if (!slotStack.isEmpty()) {
-                continue;
+    private static int getFirstAcceptingPosition(NetworkTopology.ExportRoute route, BitSet accepting,
+            BitSet componentDependent, ItemStack sample, HolderLookup.Provider provider, NbtMatchCache nbtCache) {
+        RouteAffinity affinity = route.affinity();
+        int position = affinity.get(sample);
+        if (position != RouteAffinity.UNKNOWN)
+            return position;
+        position = RouteAffinity.NONE;
+        int[] importIndexes = route.importIndexes();
+        for (int pos = 0; pos < importIndexes.length; pos++) {
+            int importIndex = importIndexes[pos];
+            if (accepting.get(importIndex) || componentDependent.get(importIndex) && route.targets().get(pos)
+                    .channel().getCompiledFilter(provider).matchesItem(sample, provider, nbtCache)) {
+                position = pos;
+                break;
             }
-            remaining = handler.insertItem(slot, remaining, simulate);
         }
-
-        return remaining;
+        affinity.put(sample, position);
+        return position;
     }
 
-    private static ItemStack insertItemStrictAllowedSlots(IItemHandlerModifiable handler, ItemStack stack,
-            boolean simulate, boolean[] allowedSlots) {
-        ItemStack remaining = stack.copy();
-
-        for (int pass = 0; pass < 2 && !remaining.isEmpty(); pass++) {
-            boolean mergePass = pass == 0;
-
-            for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
-                if (slot >= allowedSlots.length || !allowedSlots[slot]) {
-                    continue;
-                }
-
-                ItemStack slotStack = handler.getStackInSlot(slot);
-                boolean slotEmpty = slotStack.isEmpty();
-
-                if (mergePass && slotEmpty) {
-                    continue;
-                }
-                if (!mergePass && !slotEmpty) {
-                    continue;
-                }
-                if (!slotEmpty && !ItemStack.isSameItemSameComponents(slotStack, remaining)) {
-                    continue;
-                }
-                if (!handler.isItemValid(slot, remaining)) {
-                    continue;
-                }
-
-                int slotLimit = Math.min(handler.getSlotLimit(slot), remaining.getMaxStackSize());
-                if (!slotEmpty) {
-                    slotLimit = Math.min(slotLimit, slotStack.getMaxStackSize());
-                }
-
-                int currentCount = slotEmpty ? 0 : slotStack.getCount();
-                int space = slotLimit - currentCount;
-                if (space <= 0) {
-                    continue;
-                }
-
-                int toInsert = Math.min(space, remaining.getCount());
-                if (toInsert <= 0) {
-                    continue;
-                }
-
-                if (!simulate) {
-                    if (slotEmpty) {
-                        handler.setStackInSlot(slot, remaining.copyWithCount(toInsert));
-                    } else {
-                        ItemStack updated = slotStack.copy();
-                        updated.grow(toInsert);
-                        handler.setStackInSlot(slot, updated);
-                    }
-                }
+    private static int firstSlotFrom(BitSet slots, int start) {
+        int slot = slots.nextSetBit(start);
+        return slot >= 0 ? slot : slots.nextSetBit(0);
+    }
 
-                remaining.shrink(toInsert);
-            }
+    // -1 once the walk has wrapped back around to start
+    private static int nextSlotAfter(BitSet slots, int slot, int start) {
+        int next = slots.nextSetBit(slot + 1);
+        if (slot >= start) {
+            if (next >= 0)
+                return next;
+            next = slots.nextSetBit(0);
         }
-
-        return remaining;
+        return next >= 0 && next < start ? next : -1;
     }
 
     private static boolean executeFluidMove(IFluidHandler source, IFluidHandler target, int limitMb,
-            ItemStack[] exportFilters, FilterMode exportFilterMode,
-            ItemStack[] importFilters, FilterMode importFilterMode,
-            HolderLookup.Provider provider) {
+            CompiledFilter exportFilter, CompiledFilter importFilter,
+            FluidCountIndex sourceCounts, FluidCountIndex targetCounts, HolderLookup.Provider provider) {
 
         int remaining = limitMb;
         boolean movedAny = false;
-        AmountConstraints amountConstraints = collectAmountConstraints(exportFilters, importFilters);
+        AmountConstraints amountConstraints = collectAmountConstraints(exportFilter, importFilter);
+        // Synced once per call, the drains and fills below keep them current
+        if (amountConstraints.hasExportThreshold) {
+            sourceCounts.sync(source);
+        }
+        if (amountConstraints.hasImportThreshold) {
+            targetCounts.sync(target);
+        }
 
         for (int tank = 0; tank < source.getTanks() && remaining > 0; tank++) {
             FluidStack tankFluid = source.getFluidInTank(tank);
             if (tankFluid.isEmpty())
                 continue;
-            if (tankFluid.getFluid().builtInRegistryHolder().is(ModTags.RESOURCE_BLACKLIST_FLUIDS))
+            if (RegistryIdIndex.isBlacklisted(tankFluid.getFluid()))
                 continue;
 
             int requestFromTank = Math.min(remaining, tankFluid.getAmount());
@@ -713,14 +800,12 @@ public class TransferEngine {
             if (simulated.isEmpty())
                 continue;
 
-            if (provider != null) {
-                if (!FilterLogic.matchesFluid(exportFilters, exportFilterMode, simulated, provider))
-                    continue;
-                if (!FilterLogic.matchesFluid(importFilters, importFilterMode, simulated, provider))
-                    continue;
-            }
+            if (!exportFilter.matchesFluid(simulated, provider))
+                continue;
+            if (!importFilter.matchesFluid(simulated, provider))
+                continue;
 
-            int allowedByAmount = getAllowedTransferByFluidAmountConstraints(source, target, simulated,
+            int allowedByAmount = getAllowedTransferByFluidAmountConstraints(sourceCounts, targetCounts, simulated,
                     amountConstraints);
             if (allowedByAmount <= 0)
                 continue;
@@ -747,37 +832,13 @@ public class TransferEngine {
             if (filled > 0) {
                 remaining -= filled;
                 movedAny = true;
+                sourceCounts.onMoved(drained, -filled);
+                targetCounts.onMoved(drained, filled);
             }
         }
         return movedAny;
     }
 
-    private static int executeEnergyMove(IEnergyStorage source, IEnergyStorage target, int limitRF) {
-        int extracted = source.extractEnergy(limitRF, true);
-        if (extracted <= 0)
-            return 0;
-
-        int accepted = target.receiveEnergy(extracted, true);
-        if (accepted <= 0)
-            return 0;
-
-        int toMove = Math.min(extracted, accepted);
-        int actuallyExtracted = source.extractEnergy(toMove, false);
-        if (actuallyExtracted <= 0)
-            return 0;
-
-        return target.receiveEnergy(actuallyExtracted, false);
-    }
-
-    private static LogisticsNodeEntity findNode(MinecraftServer server, UUID nodeId) {
-        for (ServerLevel level : server.getAllLevels()) {
-            Entity entity = level.getEntity(nodeId);
-            if (entity instanceof LogisticsNodeEntity node)
-                return node;
-        }
-        return null;
-    }
-
     private static boolean isRedstoneActive(RedstoneMode mode, int signalStrength) {
         return switch (mode) {
             case ALWAYS_ON -> true;
@@ -787,47 +848,15 @@ public class TransferEngine {
         };
     }
 
-    private static AmountConstraints collectAmountConstraints(ItemStack[] exportFilters, ItemStack[] importFilters) {
-        int exportThreshold = 0;
-        boolean hasExportThreshold = false;
-
-        if (exportFilters != null) {
-            for (ItemStack filter : exportFilters) {
-                if (AmountFilterData.isAmountFilterItem(filter)) {
-                    hasExportThreshold = true;
-                    exportThreshold = Math.max(exportThreshold, AmountFilterData.getAmount(filter));
-                }
-            }
-        }
-
-        int importThreshold = Integer.MAX_VALUE;
-        boolean hasImportThreshold = false;
-
-        if (importFilters != null) {
-            for (ItemStack filter : importFilters) {
-                if (AmountFilterData.isAmountFilterItem(filter)) {
-                    hasImportThreshold = true;
-                    importThreshold = Math.min(importThreshold, AmountFilterData.getAmount(filter));
-                }
-            }
-        }
-
-        return new AmountConstraints(hasExportThreshold, exportThreshold, hasImportThreshold, importThreshold);
-    }
-
-    private static Map<Item, Integer> buildItemCountCache(IItemHandler handler) {
-        Map<Item, Integer> counts = new HashMap<>();
-        for (int i = 0; i < handler.getSlots(); i++) {
-            ItemStack stack = handler.getStackInSlot(i);
-            if (!stack.isEmpty()) {
-                counts.merge(stack.getItem(), stack.getCount(), Integer::sum);
-            }
-        }
-        return counts;
+    // Thresholds are folded into the compiled filters, so filter items are not re-read per operation
+    private static AmountConstraints collectAmountConstraints(CompiledFilter exportFilter,
+            CompiledFilter importFilter) {
+        return new AmountConstraints(exportFilter.hasAmountThreshold(), exportFilter.getExportThreshold(),
+                importFilter.hasAmountThreshold(), importFilter.getImportThreshold());
     }
 
     private static int getAllowedTransferCached(ItemStack candidate, AmountConstraints constraints,
-            Map<Item, Integer> sourceCounts, Map<Item, Integer> targetCounts) {
+            Map<Item, Integer> sourceCounts, TargetStateCache.TargetState targetState) {
         int allowed = Integer.MAX_VALUE;
 
         if (constraints.hasExportThreshold) {
@@ -839,7 +868,7 @@ public class TransferEngine {
         }
 
         if (constraints.hasImportThreshold) {
-            int targetCount = targetCounts != null ? targetCounts.getOrDefault(candidate.getItem(), 0) : 0;
+            int targetCount = targetState.getItemCount(candidate.getItem());
             int importCap = constraints.importThreshold - targetCount;
             if (importCap <= 0)
                 return 0;
@@ -872,12 +901,12 @@ public class TransferEngine {
         return allowed == Integer.MAX_VALUE ? candidate.getCount() : Math.max(0, allowed);
     }
 
-    private static int getAllowedTransferByFluidAmountConstraints(IFluidHandler source, IFluidHandler target,
-            FluidStack candidate, AmountConstraints constraints) {
+    private static int getAllowedTransferByFluidAmountConstraints(FluidCountIndex sourceCounts,
+            FluidCountIndex targetCounts, FluidStack candidate, AmountConstraints constraints) {
         int allowed = Integer.MAX_VALUE;
 
         if (constraints.hasExportThreshold) {
-            int sourceAmount = countMatchingFluid(source, candidate);
+            int sourceAmount = sourceCounts.get(candidate);
             int exportCap = sourceAmount - constraints.exportThreshold;
             if (exportCap <= 0)
                 return 0;
@@ -885,7 +914,7 @@ public class TransferEngine {
         }
 
         if (constraints.hasImportThreshold) {
-            int targetAmount = countMatchingFluid(target, candidate);
+            int targetAmount = targetCounts.get(candidate);
             int importCap = constraints.importThreshold - targetAmount;
             if (importCap <= 0)
                 return 0;
@@ -906,17 +935,6 @@ public class TransferEngine {
         return count;
     }
 
-    private static int countMatchingFluid(IFluidHandler handler, FluidStack candidate) {
-        int amount = 0;
-        for (int i = 0; i < handler.getTanks(); i++) {
-            FluidStack stack = handler.getFluidInTank(i);
-            if (!stack.isEmpty() && FluidStack.isSameFluidSameComponents(stack, candidate)) {
-                amount += stack.getAmount();
-            }
-        }
-        return amount;
-    }
-
     private static boolean[] buildSlotAccessMask(IItemHandler handler, ItemStack[] filters) {
         if (handler == null || filters == null || filters.length == 0) {
             return null;
@@ -158,7 +158,8 @@ public class NodeMenu extends AbstractContainerMenu {
 
     private void markDirty() {
         if (node != null && node.getNetworkId() != null && node.level() instanceof ServerLevel level) {
-            NetworkRegistry.get(level).markNetworkDirty(node.getNetworkId());
+            NetworkRegistry.get(level).invalidateTopology(node.getNetworkId(), node.getUUID(),
+                    LogisticsNodeEntity.ALL_CHANNELS_MASK);
         }
     }
 
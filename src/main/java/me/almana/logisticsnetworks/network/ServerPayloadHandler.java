@@ -36,7 +36,7 @@ public class ServerPayloadHandler {
 
             updateChannelData(channel, payload);
             clampChannelToUpgradeLimits(node, channel);
-            markNetworkDirty(node);
+            invalidateTopology(node, 1 << payload.channelIndex());
         });
     }
 
@@ -146,6 +146,7 @@ public class ServerPayloadHandler {
             ChannelData channel = node.getChannel(payload.channelIndex());
             if (channel != null) {
                 channel.setFilterItem(payload.filterSlot(), payload.filterItem().copyWithCount(1));
+                invalidateTopology(node, 1 << payload.channelIndex());
             }
         });
     }
@@ -161,7 +162,7 @@ public class ServerPayloadHandler {
 
             channel.setFilterItem(payload.filterSlot(),
                     payload.filterItem().is(ModTags.FILTERS) ? payload.filterItem().copyWithCount(1) : ItemStack.EMPTY);
-            markNetworkDirty(node);
+            invalidateTopology(node, 1 << payload.channelIndex());
         });
     }
 
@@ -177,7 +178,7 @@ public class ServerPayloadHandler {
                 if (channel != null)
                     setChannelToUpgradeMax(node, channel);
             }
-            markNetworkDirty(node);
+            invalidateTopology(node, LogisticsNodeEntity.ALL_CHANNELS_MASK);
         });
     }
 
@@ -305,9 +306,9 @@ public class ServerPayloadHandler {
         return (entity instanceof LogisticsNodeEntity node && node.isValidNode()) ? node : null;
     }
 
-    private static void markNetworkDirty(LogisticsNodeEntity node) {
+    private static void invalidateTopology(LogisticsNodeEntity node, int channelMask) {
         if (node.getNetworkId() != null && node.level() instanceof ServerLevel level) {
-            NetworkRegistry.get(level).markNetworkDirty(node.getNetworkId());
+            NetworkRegistry.get(level).invalidateTopology(node.getNetworkId(), node.getUUID(), channelMask);
         }
     }
 
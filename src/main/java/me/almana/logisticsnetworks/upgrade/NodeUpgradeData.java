@@ -1,12 +1,11 @@
 package me.almana.logisticsnetworks.upgrade;
 
 import me.almana.logisticsnetworks.data.LogisticsNetwork;
+import me.almana.logisticsnetworks.data.NodeIndex;
 import me.almana.logisticsnetworks.entity.LogisticsNodeEntity;
 import me.almana.logisticsnetworks.registration.Registration;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.level.ServerLevel;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 
@@ -113,12 +112,12 @@ public final class NodeUpgradeData {
 
         ResourceKey<Level> nodeDimension = node.level().dimension();
 
-        for (UUID otherId : network.getNodeUuids()) {
+        for (UUID otherId : NodeIndex.getLoadedNodes(network.getId())) {
             if (otherId.equals(node.getUUID()))
                 continue;
 
-            Entity entity = findEntity(server, otherId);
-            if (entity instanceof LogisticsNodeEntity otherNode && otherNode.isValidNode()) {
+            LogisticsNodeEntity otherNode = NodeIndex.get(otherId);
+            if (otherNode != null && otherNode.isValidNode()) {
                 if (!otherNode.level().dimension().equals(nodeDimension)) {
                     return true;
                 }
@@ -127,15 +126,6 @@ public final class NodeUpgradeData {
         return false;
     }
 
-    private static Entity findEntity(MinecraftServer server, UUID uuid) {
-        for (ServerLevel level : server.getAllLevels()) {
-            Entity entity = level.getEntity(uuid);
-            if (entity != null)
-                return entity;
-        }
-        return null;
-    }
-
     public static int getUpgradeTier(LogisticsNodeEntity node) {
         int maxTier = 0;
         for (int i = 0; i < LogisticsNodeEntity.UPGRADE_SLOT_COUNT; i++) {
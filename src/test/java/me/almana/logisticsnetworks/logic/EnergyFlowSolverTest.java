@@ -0,0 +1,156 @@
+package me.almana.logisticsnetworks.logic;
+
+import net.neoforged.neoforge.energy.IEnergyStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EnergyFlowSolverTest {
+
+    private static final class TestStorage implements IEnergyStorage {
+        private final int capacity;
+        private final int maxTransfer;
+        private int energy;
+        // False for generators, which cannot take energy back
+        private boolean receives = true;
+        // Real receives stop here while simulations still report the full room
+        private int acceptLimit = Integer.MAX_VALUE;
+
+        private TestStorage(int capacity, int maxTransfer, int energy) {
+            this.capacity = capacity;
+            this.maxTransfer = maxTransfer;
+            this.energy = energy;
+        }
+
+        @Override
+        public int receiveEnergy(int toReceive, boolean simulate) {
+            if (!receives)
+                return 0;
+            int accepted = Math.max(0, Math.min(Math.min(maxTransfer, toReceive), capacity - energy));
+            if (!simulate) {
+                accepted = Math.min(accepted, acceptLimit);
+                energy += accepted;
+            }
+            return accepted;
+        }
+
+        @Override
+        public int extractEnergy(int toExtract, boolean simulate) {
+            int extracted = Math.max(0, Math.min(Math.min(maxTransfer, toExtract), energy));
+            if (!simulate) {
+                energy -= extracted;
+            }
+            return extracted;
+        }
+
+        @Override
+        public int getEnergyStored() {
+            return energy;
+        }
+
+        @Override
+        public int getMaxEnergyStored() {
+            return capacity;
+        }
+
+        @Override
+        public boolean canExtract() {
+            return true;
+        }
+
+        @Override
+        public boolean canReceive() {
+            return receives;
+        }
+    }
+
+    private static Map<String, Integer> solve(EnergyFlowSolver<String> solver) {
+        Map<String, Integer> moved = new HashMap<>();
+        solver.solve(moved::put);
+        return moved;
+    }
+
+    @Test
+    void sinkRejectingPartOfItsShareKeepsEnergyInSource() {
+        TestStorage source = new TestStorage(1000, 1000, 1000);
+        source.receives = false;
+        TestStorage partial = new TestStorage(1000, 1000, 0);
+        partial.acceptLimit = 200;
+
+        EnergyFlowSolver<String> solver = new EnergyFlowSolver<>();
+        solver.add("exporter", source, 500, List.of(partial));
+        Map<String, Integer> moved = solve(solver);
+
+        assertEquals(200, moved.get("exporter"));
+        assertEquals(200, partial.getEnergyStored());
+        assertEquals(800, source.getEnergyStored());
+    }
+
+    @Test
+    void rejectedShareIsTrimmedFromTheRightSources() {
+        TestStorage first = new TestStorage(1000, 1000, 1000);
+        TestStorage second = new TestStorage(1000, 1000, 1000);
+        TestStorage shared = new TestStorage(1000, 1000, 0);
+        shared.acceptLimit = 300;
+
+        EnergyFlowSolver<String> solver = new EnergyFlowSolver<>();
+        solver.add("first", first, 200, List.of(shared));
+        solver.add("second", second, 200, List.of(shared));
+        Map<String, Integer> moved = solve(solver);
+
+        // The sink refuses 100 of the 400 assigned, taken off the last flow
+        assertEquals(200, moved.get("first"));
+        assertEquals(100, moved.get("second"));
+        assertEquals(300, shared.getEnergyStored());
+        assertEquals(2000, first.getEnergyStored() + second.getEnergyStored() + shared.getEnergyStored());
+    }
+
+    @Test
+    void handlerThatIsSourceAndSinkIsCountedOnce() {
+        TestStorage a = new TestStorage(1000, 1000, 600);
+        TestStorage b = new TestStorage(1000, 1000, 400);
+        b.acceptLimit = 100;
+
+        EnergyFlowSolver<String> solver = new EnergyFlowSolver<>();
+        solver.add("a", a, 300, List.of(b));
+        solver.add("b", b, 300, List.of(a));
+        Map<String, Integer> moved = solve(solver);
+
+        assertEquals(100, moved.get("a"));
+        assertEquals(300, moved.get("b"));
+        assertEquals(800, a.getEnergyStored());
+        assertEquals(200, b.getEnergyStored());
+    }
+
+    @Test
+    void earlierExportersFillSharedSinksFirst() {
+        TestStorage first = new TestStorage(1000, 1000, 1000);
+        TestStorage second = new TestStorage(1000, 1000, 1000);
+        TestStorage sink = new TestStorage(300, 1000, 0);
+
+        EnergyFlowSolver<String> solver = new EnergyFlowSolver<>();
+        solver.add("first", first, 500, List.of(sink));
+        solver.add("second", second, 500, List.of(sink));
+        Map<String, Integer> moved = solve(solver);
+
+        assertEquals(300, moved.get("first"));
+        assertEquals(0, moved.get("second"));
+        assertEquals(300, sink.getEnergyStored());
+    }
+
+    @Test
+    void exporterNeverFeedsItself() {
+        TestStorage storage = new TestStorage(1000, 1000, 500);
+
+        EnergyFlowSolver<String> solver = new EnergyFlowSolver<>();
+        solver.add("self", storage, 200, List.of(storage));
+        Map<String, Integer> moved = solve(solver);
+
+        assertEquals(0, moved.get("self"));
+        assertEquals(500, storage.getEnergyStored());
+    }
+}
@@ -0,0 +1,114 @@
+package me.almana.logisticsnetworks.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long LEVEL_1 = 1L << 6;
+    private static final long LEVEL_2 = 1L << 12;
+    private static final long LEVEL_3 = 1L << 18;
+    private static final long HORIZON = 1L << 24;
+
+    // Steps one tick at a time and records the tick each value fired on
+    private static Map<String, Long> stepUntil(TimingWheel<String> wheel, long end) {
+        Map<String, Long> fired = new HashMap<>();
+        for (long tick = wheel.getCurrentTick() + 1; tick <= end; tick++) {
+            long now = tick;
+            wheel.advance(now, value -> fired.put(value, now));
+        }
+        return fired;
+    }
+
+    @Test
+    void firesOnDueTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100);
+        wheel.schedule("a", 105);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(104, fired::add);
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(105, fired::add);
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesInTickOrderWhenAdvancingPastSeveral() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.schedule("late", 10);
+        wheel.schedule("early", 3);
+        wheel.schedule("middle", 7);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(20, fired::add);
+        assertEquals(List.of("early", "middle", "late"), fired);
+    }
+
+    @Test
+    void overdueEntryFiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(50);
+        wheel.schedule("overdue", 10);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(51, fired::add);
+        assertEquals(List.of("overdue"), fired);
+    }
+
+    @Test
+    void cascadesDownFromEveryLevel() {
+        // Each start sits just below a level boundary, so the entry has to cascade to fire on time
+        long[][] cases = {
+                { LEVEL_1 - 4, LEVEL_1 + 6 },
+                { LEVEL_2 - 6, LEVEL_2 + 4 },
+                { LEVEL_3 - 6, LEVEL_3 + LEVEL_1 + 4 },
+                { HORIZON - 20, HORIZON + 10 },
+        };
+        for (long[] c : cases) {
+            TimingWheel<String> wheel = new TimingWheel<>(c[0]);
+            wheel.schedule("entry", c[1]);
+            Map<String, Long> fired = stepUntil(wheel, c[1] + 2);
+            assertEquals(c[1], fired.get("entry"), "scheduled from " + c[0]);
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    void keepsExactTicksAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        long[] due = { 1, 63, 64, 65, 4095, 4096, 4100, 70_000, 262_150 };
+        for (long tick : due) {
+            wheel.schedule("t" + tick, tick);
+        }
+
+        Map<String, Long> fired = stepUntil(wheel, 262_200);
+        for (long tick : due) {
+            assertEquals(tick, fired.get("t" + tick));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void jumpPastHorizonKeepsLaterEntries() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.schedule("soon", 10);
+        wheel.schedule("later", HORIZON + 100);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(HORIZON + 50, fired::add);
+        assertEquals(List.of("soon"), fired);
+        assertEquals(1, wheel.size());
+
+        Map<String, Long> rest = stepUntil(wheel, HORIZON + 120);
+        assertEquals(HORIZON + 100, rest.get("later"));
+    }
+}